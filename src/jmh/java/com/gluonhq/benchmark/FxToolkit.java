@@ -0,0 +1,42 @@
+package com.gluonhq.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import javafx.application.Platform;
+
+/**
+ * Starts the JavaFX toolkit once, for the benchmarks that create controls,
+ * canvases or fonts.
+ */
+public final class FxToolkit {
+
+    private static boolean started;
+
+    private FxToolkit() {
+    }
+
+    public static synchronized void start() throws InterruptedException {
+        if (started) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            Platform.startup(latch::countDown);
+        } catch (IllegalStateException e) {
+            // already started by another benchmark in the same JVM
+            latch.countDown();
+        }
+        Platform.setImplicitExit(false);
+        latch.await();
+        started = true;
+    }
+
+    /**
+     * Runs a task on the JavaFX Application Thread and waits for it
+     */
+    public static void runAndWait(Runnable runnable) throws Exception {
+        FutureTask<Void> task = new FutureTask<>(runnable, null);
+        Platform.runLater(task);
+        task.get();
+    }
+}
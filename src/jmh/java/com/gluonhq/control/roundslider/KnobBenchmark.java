@@ -0,0 +1,60 @@
+package com.gluonhq.control.roundslider;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the value updates of a knob without skin, with and without
+ * snapping to the ticks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnobBenchmark {
+
+    @Param({"true", "false"})
+    public boolean snapToTicks;
+
+    private Knob knob;
+    private double value;
+
+    @Setup
+    public void setup() {
+        knob = new Knob(0, 360, 0);
+        knob.setMajorTickUnit(30);
+        knob.setMinorTickCount(4);
+        knob.setSnapToTicks(snapToTicks);
+    }
+
+    private double nextValue() {
+        value += 7.3;
+        if (value > 400) {
+            value -= 440;
+        }
+        return value;
+    }
+
+    @Benchmark
+    public double adjustValue() {
+        knob.adjustValue(nextValue());
+        return knob.getValue();
+    }
+
+    @Benchmark
+    public double snapValueToTicks() {
+        return knob.snapValueToTicks(nextValue());
+    }
+}
@@ -0,0 +1,73 @@
+package com.gluonhq.control.roundslider;
+
+import com.gluonhq.benchmark.FxToolkit;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of drawing the tick marks and labels of the knob, at several sizes
+ * and tick counts, like the compass view does on every resize.
+ * <p>
+ * The skin is built and draws on the JavaFX Application Thread, so the time
+ * of {@link #drawTickMarks()} includes the hand over to that thread. The
+ * canvas is not in a scene, so its commands are never rendered: this
+ * measures the work of the skin and of the graphics context buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnobSkinBenchmark {
+
+    @Param({"100", "300", "1000"})
+    public double size;
+
+    // major tick unit / minor tick count, over 0 to 360
+    @Param({"90/1", "30/2", "10/4"})
+    public String ticks;
+
+    @Param({"true", "false"})
+    public boolean labels;
+
+    private KnobSkin skin;
+    private GraphicsContext context;
+
+    @Setup
+    public void setup() throws Exception {
+        FxToolkit.start();
+        String[] t = ticks.split("/");
+        FxToolkit.runAndWait(() -> {
+            Knob knob = new Knob(0, 360, 0);
+            knob.setMajorTickUnit(Double.parseDouble(t[0]));
+            knob.setMinorTickCount(Integer.parseInt(t[1]));
+            knob.setShowTickMarks(true);
+            knob.setShowTickLabels(labels);
+            skin = new KnobSkin(knob);
+            knob.setSkin(skin);
+            knob.resize(size, size);
+            // the skin applies the new size on the layout pass
+            knob.layout();
+            context = new Canvas(size, size).getGraphicsContext2D();
+        });
+    }
+
+    @Benchmark
+    public GraphicsContext drawTickMarks() throws Exception {
+        FxToolkit.runAndWait(() -> skin.drawTickMarks(context));
+        return context;
+    }
+}
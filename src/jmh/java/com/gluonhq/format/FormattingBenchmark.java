@@ -0,0 +1,74 @@
+package com.gluonhq.format;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The label formatting paths of the accelerometer and compass views, against
+ * the String.format and DateTimeFormatter code they replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss:SSS");
+
+    private final CharFormatter formatter = new CharFormatter();
+    private final DecimalStringCache headings = new DecimalStringCache(1, null, "\u00b0", 4096);
+    private double value;
+    private long time = System.currentTimeMillis();
+
+    private double nextValue() {
+        value += 0.37;
+        if (value >= 360) {
+            value -= 360;
+        }
+        return value;
+    }
+
+    @Benchmark
+    public String acceleration() {
+        return formatter.clear().append("X: ").append(nextValue(), 4).append(" m/s\u00b2").toString();
+    }
+
+    @Benchmark
+    public String accelerationStringFormat() {
+        return String.format(Locale.ROOT, "X: %.4f m/s\u00b2", nextValue());
+    }
+
+    @Benchmark
+    public String time() {
+        return formatter.clear().appendTime(time += 17).toString();
+    }
+
+    @Benchmark
+    public String timeDateTimeFormatter() {
+        return TIME.format(Instant.ofEpochMilli(time += 17).atZone(ZoneId.systemDefault()));
+    }
+
+    @Benchmark
+    public String heading() {
+        return headings.get(nextValue());
+    }
+
+    @Benchmark
+    public String headingStringFormat() {
+        return String.format(Locale.ROOT, "%.1f\u00b0", nextValue());
+    }
+}
@@ -0,0 +1,129 @@
+package com.gluonhq.gaf.down.chart;
+
+import com.gluonhq.benchmark.FxToolkit;
+import com.gluonhq.gaf.down.data.SampleBuffer;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.layout.StackPane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of a frame of the accelerometer chart, with the {@link StreamingChart}
+ * and with the {@link LineChart} it replaced, at several sensor rates: a
+ * pulse worth of samples is added to the chart, and the chart is laid out.
+ * <p>
+ * The line chart is set up like the accel view did, without animations or
+ * symbols and keeping the last {@link #POINTS} samples of each series. The
+ * streaming chart shows the same number of samples. Both charts are in a
+ * scene that is not in a window, so nothing is rendered: this measures the
+ * work done on the JavaFX Application Thread, including the hand over to it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChartFrameBenchmark {
+
+    private static final int FRAMES_PER_SECOND = 60;
+    private static final int POINTS = 300;
+
+    public enum Chart {
+        STREAMING, LINE_CHART
+    }
+
+    // the sensor rate, in Hz
+    @Param({"100", "200", "500"})
+    public int rate;
+
+    @Param({"STREAMING", "LINE_CHART"})
+    public Chart chart;
+
+    private SampleBuffer buffer;
+    private StreamingChart streamingChart;
+    private LineChart<Number, Number> lineChart;
+    private int samplesPerFrame;
+    private long time;
+
+    @Setup
+    public void setup() throws Exception {
+        FxToolkit.start();
+        samplesPerFrame = (rate + FRAMES_PER_SECOND - 1) / FRAMES_PER_SECOND;
+        FxToolkit.runAndWait(() -> {
+            StackPane root;
+            if (chart == Chart.STREAMING) {
+                buffer = new SampleBuffer(3, POINTS);
+                streamingChart = new StreamingChart();
+                streamingChart.setTimeWindow(POINTS * 1000d / rate);
+                streamingChart.setBuffer(buffer);
+                root = new StackPane(streamingChart);
+            } else {
+                NumberAxis xAxis = new NumberAxis();
+                xAxis.setForceZeroInRange(false);
+                lineChart = new LineChart<>(xAxis, new NumberAxis());
+                lineChart.setAnimated(false);
+                lineChart.setCreateSymbols(false);
+                for (int c = 0; c < 3; c++) {
+                    lineChart.getData().add(new XYChart.Series<>());
+                }
+                root = new StackPane(lineChart);
+            }
+            new Scene(root, 800, 400);
+            for (int i = 0; i < POINTS; i++) {
+                add();
+            }
+            root.applyCss();
+            root.layout();
+        });
+    }
+
+    private void add() {
+        time += 1000 / rate;
+        double t = time * 0.001;
+        double x = Math.sin(t), y = Math.cos(t), z = 9.81;
+        if (chart == Chart.STREAMING) {
+            buffer.add(time, x, y, z);
+        } else {
+            add(lineChart.getData().get(0), x);
+            add(lineChart.getData().get(1), y);
+            add(lineChart.getData().get(2), z);
+        }
+    }
+
+    private void add(XYChart.Series<Number, Number> series, double value) {
+        series.getData().add(new XYChart.Data<>(time, value));
+        if (series.getData().size() > POINTS) {
+            series.getData().remove(0);
+        }
+    }
+
+    @Benchmark
+    public long frame() throws Exception {
+        FxToolkit.runAndWait(() -> {
+            for (int i = 0; i < samplesPerFrame; i++) {
+                add();
+            }
+            if (chart == Chart.STREAMING) {
+                streamingChart.refresh();
+                streamingChart.layout();
+            } else {
+                lineChart.layout();
+            }
+        });
+        return time;
+    }
+}
@@ -0,0 +1,97 @@
+package com.gluonhq.gaf.down.data;
+
+import com.gluonhq.benchmark.FxToolkit;
+import com.gluonhq.gaf.down.chart.StreamingChart;
+import com.gluonhq.gaf.down.chart.StreamingChartSkin;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of adding accelerations to the accelerometer chart, the way the accel
+ * view does: the samples go into the ring buffer, and once per pulse the
+ * chart draws the new ones.
+ * <p>
+ * {@link #addFrame()} runs on the JavaFX Application Thread, like the pulse
+ * does, so its time includes the hand over to that thread. The chart is not
+ * in a window, so its canvases are never rendered: this measures the work of
+ * the skin and of the graphics context buffers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleIngestionBenchmark {
+
+    private static final int FRAMES_PER_SECOND = 60;
+
+    // the sensor rate, in Hz
+    @Param({"100", "200", "500"})
+    public int rate;
+
+    @Param({"3000", "30000"})
+    public int capacity;
+
+    private SampleBuffer buffer;
+    private StreamingChart chart;
+    private int samplesPerFrame;
+    private long time;
+
+    @Setup
+    public void setup() throws Exception {
+        FxToolkit.start();
+        samplesPerFrame = (rate + FRAMES_PER_SECOND - 1) / FRAMES_PER_SECOND;
+        buffer = new SampleBuffer(3, capacity);
+        for (int i = 0; i < capacity; i++) {
+            add();
+        }
+        FxToolkit.runAndWait(() -> {
+            chart = new StreamingChart();
+            chart.setSkin(new StreamingChartSkin(chart));
+            chart.setBuffer(buffer);
+            chart.resize(800, 400);
+            // the skin sizes its canvases and draws the buffer on the layout pass
+            chart.layout();
+        });
+    }
+
+    private void add() {
+        time += 1000 / rate;
+        double t = time * 0.001;
+        buffer.add(time, Math.sin(t), Math.cos(t), 9.81);
+    }
+
+    /**
+     * A sample from the sensor, into the ring buffer only
+     */
+    @Benchmark
+    public long add1() {
+        add();
+        return buffer.getCount();
+    }
+
+    /**
+     * A pulse worth of samples, and the refresh of the chart
+     */
+    @Benchmark
+    public long addFrame() throws Exception {
+        FxToolkit.runAndWait(() -> {
+            for (int i = 0; i < samplesPerFrame; i++) {
+                add();
+            }
+            chart.refresh();
+        });
+        return buffer.getCount();
+    }
+}
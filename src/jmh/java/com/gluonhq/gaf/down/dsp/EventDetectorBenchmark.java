@@ -0,0 +1,78 @@
+package com.gluonhq.gaf.down.dsp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of processing an acceleration sample with the event detector, on a
+ * recorded-like signal: walking at 1.8 Hz with noise, and a shake and an
+ * impact every few seconds, so all the detectors fire.
+ * <p>
+ * The listener only counts the events. Run it with the gc profiler,
+ * <code>-Pjmh.prof=gc</code>, to see the bytes allocated per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDetectorBenchmark {
+
+    private static final int SECONDS = 30;
+
+    // the sensor rate, in Hz
+    @Param({"100", "500"})
+    public int rate;
+
+    private EventDetector detector;
+    private long[] times;
+    private double[] xs, ys, zs;
+    private int index;
+    private long offset;
+    private long events;
+
+    @Setup
+    public void setup() {
+        detector = new EventDetector();
+        detector.setListener((type, timestamp, value) -> events++);
+        int n = SECONDS * rate;
+        times = new long[n];
+        xs = new double[n];
+        ys = new double[n];
+        zs = new double[n];
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            double t = (double) i / rate;
+            times[i] = i * 1000L / rate;
+            double phase = t % 5;
+            xs[i] = 0.3 * random.nextGaussian() + (phase < 1 ? 15 * Math.sin(2 * Math.PI * 4 * t) : 0);
+            ys[i] = 0.3 * random.nextGaussian();
+            zs[i] = 9.81 + 2 * Math.sin(2 * Math.PI * 1.8 * t) + 0.3 * random.nextGaussian()
+                    + (phase > 3 && phase < 3.02 ? 30 : 0);
+        }
+    }
+
+    @Benchmark
+    public long process() {
+        if (index == times.length) {
+            // the signal again, later
+            index = 0;
+            offset += SECONDS * 1000L;
+        }
+        detector.process(offset + times[index], xs[index], ys[index], zs[index]);
+        index++;
+        return events;
+    }
+}
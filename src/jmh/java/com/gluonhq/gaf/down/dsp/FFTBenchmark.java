@@ -0,0 +1,86 @@
+package com.gluonhq.gaf.down.dsp;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one transform of the spectrum view, at the window sizes it offers.
+ * <p>
+ * Before measuring, the transform of the signal, a 12.5 Hz sine sampled at
+ * 100 Hz with some noise, is checked against a direct DFT and has to peak at
+ * 12.5 Hz: the benchmark of a wrong transform fails instead of reporting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFTBenchmark {
+
+    @Param({"256", "1024", "4096"})
+    public int size;
+
+    private FFT fft;
+    private double[] signal;
+    private double[] re;
+    private double[] im;
+
+    @Setup
+    public void setup() {
+        fft = new FFT(size);
+        signal = new double[size];
+        re = new double[size];
+        im = new double[size];
+        Random random = new Random(1);
+        for (int i = 0; i < size; i++) {
+            signal[i] = Math.sin(2 * Math.PI * 12.5 * i / 100) + 0.2 * random.nextGaussian();
+        }
+        verify();
+    }
+
+    private void verify() {
+        transform();
+        double error = 0;
+        int peak = 0;
+        for (int k = 0; k <= size / 2; k++) {
+            double dftRe = 0, dftIm = 0;
+            for (int i = 0; i < size; i++) {
+                double angle = -2 * Math.PI * ((long) k * i % size) / size;
+                dftRe += signal[i] * Math.cos(angle);
+                dftIm += signal[i] * Math.sin(angle);
+            }
+            error = Math.max(error, Math.hypot(re[k] - dftRe, im[k] - dftIm));
+            if (Math.hypot(re[k], im[k]) > Math.hypot(re[peak], im[peak])) {
+                peak = k;
+            }
+        }
+        // relative to the magnitude of the peak, about size / 2
+        if (error > 1e-9 * size) {
+            throw new IllegalStateException("FFT differs from the DFT by " + error);
+        }
+        if (peak != size / 8) {
+            throw new IllegalStateException("FFT peaks at bin " + peak + ", not " + size / 8);
+        }
+    }
+
+    @Benchmark
+    public double[] transform() {
+        System.arraycopy(signal, 0, re, 0, size);
+        Arrays.fill(im, 0);
+        fft.transform(re, im);
+        return re;
+    }
+}
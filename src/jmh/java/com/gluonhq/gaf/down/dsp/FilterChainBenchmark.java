@@ -0,0 +1,67 @@
+package com.gluonhq.gaf.down.dsp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the filter stages on three axis samples, alone and chained
+ * like in the accelerometer view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark {
+
+    @Param({"lowPass", "highPass", "gravity", "smoothing", "chain"})
+    public String filter;
+
+    private final double[] values = new double[3];
+    private FilterStage stage;
+    private long time;
+
+    @Setup
+    public void setup() {
+        switch (filter) {
+            case "lowPass":
+                stage = new LowPassFilter(3, 5);
+                break;
+            case "highPass":
+                stage = new HighPassFilter(3, 0.5);
+                break;
+            case "gravity":
+                stage = new GravityFilter(3, 0.3, false);
+                break;
+            case "smoothing":
+                stage = new ExponentialSmoothing(3, 0.2);
+                break;
+            default:
+                stage = new FilterChain(new GravityFilter(3, 0.3, false), new LowPassFilter(3, 5),
+                        new ExponentialSmoothing(3, 0.5));
+                break;
+        }
+    }
+
+    @Benchmark
+    public double process() {
+        time++;
+        double t = time * 0.001;
+        values[0] = Math.sin(t);
+        values[1] = Math.cos(t);
+        values[2] = 9.81;
+        stage.process(time, values, 0, 3);
+        return values[0];
+    }
+}
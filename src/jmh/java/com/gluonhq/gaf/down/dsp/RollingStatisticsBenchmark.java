@@ -0,0 +1,46 @@
+package com.gluonhq.gaf.down.dsp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of adding a three axis sample to rolling statistics at 200 Hz, that
+ * shouldn't depend on the span of the window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RollingStatisticsBenchmark {
+
+    @Param({"1000", "10000", "60000"})
+    public long window;
+
+    private RollingStatistics statistics;
+    private long time;
+
+    @Setup
+    public void setup() {
+        statistics = new RollingStatistics(3, window, (int) (window / 5));
+    }
+
+    @Benchmark
+    public double add() {
+        time += 5;
+        double t = time * 0.001;
+        statistics.add(time, Math.sin(t), Math.cos(t), 9.81);
+        return statistics.getMax(0);
+    }
+}
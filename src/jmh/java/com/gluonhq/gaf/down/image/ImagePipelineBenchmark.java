@@ -0,0 +1,99 @@
+package com.gluonhq.gaf.down.image;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the image pipeline on a 3 MP picture, on the calling thread
+ * and on the common fork-join pool. The score is in megapixels per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(ImagePipelineBenchmark.MEGAPIXELS)
+public class ImagePipelineBenchmark {
+
+    static final int MEGAPIXELS = 3;
+    private static final int WIDTH = 2000;
+    private static final int HEIGHT = 1500;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private int[] source;
+    private ImagePipeline point;
+    private ImagePipeline unfused;
+    private ImagePipeline full;
+
+    @Setup
+    public void setup() {
+        source = new int[WIDTH * HEIGHT];
+        Random random = new Random(0);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+        point = new ImagePipeline(pool, new GrayscaleStage(), new ContrastStage(1.2));
+        // the same stages hidden behind plain stages, so they aren't fused:
+        // a pass each, to a second raster
+        unfused = new ImagePipeline(pool, new Unfused(new GrayscaleStage()),
+                new Unfused(new ContrastStage(1.2)));
+        full = new ImagePipeline(pool, new OrientationStage(6), new GrayscaleStage(),
+                new ContrastStage(1.2), new SharpenStage(0.5), new ResizeStage(1024, 1024));
+    }
+
+    // processed in place: the cost of the stages doesn't depend on the values
+    private Raster input() {
+        return new Raster(WIDTH, HEIGHT, source);
+    }
+
+    @Benchmark
+    public Raster fused() {
+        return point.process(input());
+    }
+
+    @Benchmark
+    public Raster separatePasses() {
+        return unfused.process(input());
+    }
+
+    @Benchmark
+    public Raster allStages() {
+        return full.process(input());
+    }
+
+    private static final class Unfused implements ImageStage {
+
+        private final ImageStage stage;
+
+        Unfused(ImageStage stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public String getName() {
+            return stage.getName();
+        }
+
+        @Override
+        public void process(Raster source, Raster target, int from, int to) {
+            stage.process(source, target, from, to);
+        }
+    }
+}
@@ -99,6 +99,7 @@ public class Knob extends Control {
     }
     private final DoubleProperty value = new SimpleDoubleProperty(this, "value", 0.0D) {
         @Override protected void invalidated() {
+            metrics.valueInvalidated();
             adjustValues();
         }
     };
@@ -197,6 +198,17 @@ public class Knob extends Control {
             setValue(snapValueToTicks(newValue));
         }
     }
+    
+    private final KnobMetrics metrics = new KnobMetrics();
+    
+    /**
+     * Returns the rendering metrics of this Knob. Timing is disabled by 
+     * default, see {@link KnobMetrics#setEnabled(boolean)}.
+     * @return 
+     */
+    public final KnobMetrics getMetrics() {
+        return metrics;
+    }
 
     
     /***************************************************************************
@@ -586,7 +598,8 @@ public class Knob extends Control {
         }
      }
      
-     private double snapValueToTicks(double d) {
+     // package private for the benchmarks
+     double snapValueToTicks(double d) {
         double d1 = d;
         if (isSnapToTicks()) {
             double d2;
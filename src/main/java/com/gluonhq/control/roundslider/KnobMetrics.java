@@ -0,0 +1,237 @@
+package com.gluonhq.control.roundslider;
+
+import java.util.Arrays;
+
+/**
+ * Rendering metrics of a {@link Knob}.
+ * <p>
+ * The counters are always updated, as they cost a field increment. Timing,
+ * that calls {@link System#nanoTime()} around each operation, is opt-in with
+ * {@link #setEnabled(boolean)}. Metrics are updated and read on the JavaFX
+ * Application Thread.
+ */
+public final class KnobMetrics {
+
+    private boolean enabled;
+    private long valueInvalidations;
+    private long layouts;
+    private long resizes;
+    private long tickUpdates;
+    private long tickRedraws;
+    private long rotationUpdates;
+    private long dragEvents;
+    private long dragAdjustments;
+    private final Histogram redrawTimes = new Histogram();
+    private final Histogram resizeTimes = new Histogram();
+
+    KnobMetrics() {
+    }
+
+    /**
+     * @return true if redraws and resizes are timed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the number of changes of the value
+     */
+    public long getValueInvalidations() {
+        return valueInvalidations;
+    }
+
+    /**
+     * @return the number of layout passes of the skin
+     */
+    public long getLayouts() {
+        return layouts;
+    }
+
+    /**
+     * @return the number of times the parts of the knob were resized
+     */
+    public long getResizes() {
+        return resizes;
+    }
+
+    /**
+     * @return the number of times the tick layer was looked up again,
+     * because of a change of size or configuration
+     */
+    public long getTickUpdates() {
+        return tickUpdates;
+    }
+
+    /**
+     * @return the number of times the ticks were rendered, because the
+     * tick layer wasn't in the shared cache
+     */
+    public long getTickRedraws() {
+        return tickRedraws;
+    }
+
+    /**
+     * @return the number of pulses that rotated the knob
+     */
+    public long getRotationUpdates() {
+        return rotationUpdates;
+    }
+
+    /**
+     * @return the number of drag events received
+     */
+    public long getDragEvents() {
+        return dragEvents;
+    }
+
+    /**
+     * @return the number of times the value was adjusted while dragging or
+     * flinging, at most once per pulse
+     */
+    public long getDragAdjustments() {
+        return dragAdjustments;
+    }
+
+    /**
+     * @return the times of the tick redraws, including the snapshot
+     */
+    public Histogram getRedrawTimes() {
+        return redrawTimes;
+    }
+
+    public Histogram getResizeTimes() {
+        return resizeTimes;
+    }
+
+    /**
+     * @return the number of tick layer lookups, shared by all the knobs,
+     * that found the layer in the cache
+     */
+    public static long getCacheHits() {
+        return TickLayerCache.getHits();
+    }
+
+    public static long getCacheMisses() {
+        return TickLayerCache.getMisses();
+    }
+
+    public static long getCacheEvictions() {
+        return TickLayerCache.getEvictions();
+    }
+
+    /**
+     * @return the size of the shared tick layer cache, in bytes
+     */
+    public static long getCacheBytes() {
+        return TickLayerCache.getBytes();
+    }
+
+    /**
+     * Sets all the counters and histograms to zero
+     */
+    public void reset() {
+        valueInvalidations = layouts = resizes = tickUpdates = tickRedraws = rotationUpdates = 0;
+        dragEvents = dragAdjustments = 0;
+        redrawTimes.reset();
+        resizeTimes.reset();
+    }
+
+    void valueInvalidated() {
+        valueInvalidations++;
+    }
+
+    void layout() {
+        layouts++;
+    }
+
+    void resized(long nanos) {
+        resizes++;
+        if (nanos >= 0) {
+            resizeTimes.record(nanos);
+        }
+    }
+
+    void tickUpdated() {
+        tickUpdates++;
+    }
+
+    void tickRedrawn(long nanos) {
+        tickRedraws++;
+        if (nanos >= 0) {
+            redrawTimes.record(nanos);
+        }
+    }
+
+    void rotationUpdated() {
+        rotationUpdates++;
+    }
+
+    void dragged() {
+        dragEvents++;
+    }
+
+    void dragApplied() {
+        dragAdjustments++;
+    }
+
+    /**
+     * Histogram of durations, in nanoseconds, with a bucket per power of two,
+     * so recording doesn't allocate and percentiles are within a factor of two
+     */
+    public static final class Histogram {
+
+        private final long[] buckets = new long[64];
+        private long count;
+        private long total;
+        private long max;
+
+        void record(long nanos) {
+            buckets[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))]++;
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean duration, in nanoseconds, or 0 if there are none
+         */
+        public long getMean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile the percentile, from 0 to 100
+         * @return the upper bound of the bucket of the given percentile, in
+         * nanoseconds, or 0 if there are no durations
+         */
+        public long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(max, i >= 62 ? Long.MAX_VALUE : (2L << i) - 1);
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            Arrays.fill(buckets, 0);
+            count = total = max = 0;
+        }
+    }
+}
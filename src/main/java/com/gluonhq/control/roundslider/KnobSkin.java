@@ -1,22 +1,30 @@
 package com.gluonhq.control.roundslider;
 
-import javafx.animation.RotateTransition;
-import javafx.geometry.Point2D;
+import com.gluonhq.format.DecimalStringCache;
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.event.EventHandler;
 import javafx.geometry.VPos;
-import javafx.scene.CacheHint;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.SkinBase;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.Rotate;
-import javafx.util.Duration;
+import javafx.stage.Window;
+import javafx.util.StringConverter;
 
 public class KnobSkin extends SkinBase<Knob> {
     private static final double      PREFERRED_WIDTH  = 300;
@@ -25,15 +33,56 @@ public class KnobSkin extends SkinBase<Knob> {
     private static final double      MINIMUM_HEIGHT   = 50;
     private static final double      MAXIMUM_WIDTH    = 1024;
     private static final double      MAXIMUM_HEIGHT   = 1024; 
+    private static final double      SMOOTH_TIME      = 0.15;
+    private static final double      SETTLED_ANGLE    = 0.01;
+    // what has to be updated on the next layout pass
+    private static final int         DIRTY_SIZE       = 1;
+    private static final int         DIRTY_TICKS      = 1 << 1;
+    // pointer input: the centre of the knob, as a fraction of its size, is
+    // ignored, and a fling decays with the time constant, in seconds
+    private static final double      DEAD_ZONE        = 0.08;
+    private static final double      FLING_TIME       = 0.3;
+    private static final double      FLING_MIN_SPEED  = 0.1;
+    private static final double      FLING_STOP_SPEED = 0.01;
+    private static final long        FLING_MAX_IDLE   = 100_000_000L;
+    // the output scale of windows is JavaFX 9: with 8, layers stay at 1x
+    private static final boolean     OUTPUT_SCALE     = hasOutputScale();
     private double                   size;
+    private int                      dirty = DIRTY_SIZE | DIRTY_TICKS;
+    private final KnobMetrics        metrics;
     
-    private double dragOffset;
+    // drag state: events only update it, and the input timer applies it
+    // with a single adjustValue per pulse
     private boolean onDrag;
     private double dragStartX,dragStartY;
+    private double dragPosition;
+    private double lastPointerAngle;
+    private boolean dragPending;
+    private long lastDragNanos;
+    private double flingVelocity;
+    private boolean flinging;
+    private long lastInputPulse;
+    private final AnimationTimer input = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stepInput(now);
+        }
+    };
+    private final EventHandler<MouseEvent> pressedHandler = this::knobPressed;
+    private final EventHandler<MouseEvent> draggedHandler = this::knobDragged;
+    private final EventHandler<MouseEvent> releasedHandler = this::knobReleased;
     
     private Pane pane;
+    // the ticks are drawn on the canvas, off the scene, and shown as an image
     private Canvas knobTicks;
     private GraphicsContext ticks;
+    private ImageView tickLayer;
+    private TickLayerCache.Key tickKey;
+    // the window of the knob, to render the tick layer at its output scale
+    private Scene scaleScene;
+    private Window scaleWindow;
+    private final InvalidationListener windowListener = observable -> updateWindow();
+    private final InvalidationListener scaleListener = observable -> markDirty(DIRTY_TICKS);
     private Region knobOut;
     private Region knobOutFrame1, knobOutFrame2;
     private Region knobIn;
@@ -41,25 +90,106 @@ public class KnobSkin extends SkinBase<Knob> {
     private Region knobDot;
     private Rotate dotRotate;
     
-    private RotateTransition rot;
+    // state of the rotation of the knob, moved by the timer towards the target
+    private double targetAngle;
+    private double currentAngle;
+    private double angularVelocity;
+    private long lastPulse;
+    private boolean rotating;
+    private final AnimationTimer rotation = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stepRotation(now);
+        }
+    };
+    private final DecimalStringCache tickLabels = new DecimalStringCache(0, null, null, 64);
+    
+    // tick geometry and labels, valid for the key below
+    private int tickCount;
+    private double[] tickSin = new double[0];
+    private double[] tickCos = new double[0];
+    private boolean[] tickMinor = new boolean[0];
+    private String[] tickText = new String[0];
+    private double keyMin = Double.NaN, keyMax, keyMajorTickUnit, keyMinAngle, keyMaxAngle;
+    private int keyMinorTickCount;
+    private StringConverter<Double> keyFormatter;
+    // tick label fonts, valid for the font and size below
+    private Font majorFont, minorFont;
+    private Font keyFont;
+    private double keySize;
         
     public KnobSkin(final Knob knob) {
         super(knob);
+        metrics = knob.getMetrics();
         initialize();
-        knob.widthProperty().addListener(observable -> handleControlPropertyChanged("RESIZE"));
-        knob.heightProperty().addListener(observable -> handleControlPropertyChanged("RESIZE"));
-        knob.minProperty().addListener(observable -> handleControlPropertyChanged("MIN"));
-        knob.valueProperty().addListener(observable -> handleControlPropertyChanged("VALUE"));
-        knob.maxProperty().addListener(observable -> handleControlPropertyChanged("MAX"));
-        knob.showTickMarksProperty().addListener(observable -> handleControlPropertyChanged("SHOW_TICK_MARKS"));
-        knob.showTickLabelsProperty().addListener(observable -> handleControlPropertyChanged("SHOW_TICK_LABELS"));
-        knob.majorTickUnitProperty().addListener(observable -> handleControlPropertyChanged("MAJOR_TICK_UNIT"));
-        knob.minorTickCountProperty().addListener(observable -> handleControlPropertyChanged("MINOR_TICK_COUNT"));
-        knob.labelFormatterProperty().addListener(observable -> handleControlPropertyChanged("LABEL_FORMATTER"));
-        knob.tickLabelFillProperty().addListener(observable -> handleControlPropertyChanged("TICKS"));
-        knob.tickLabelFontProperty().addListener(observable -> handleControlPropertyChanged("TICKS"));
-        knob.tickMarkFillProperty().addListener(observable -> handleControlPropertyChanged("TICKS"));
-        
+        // changes are applied once, on the next layout pass
+        knob.widthProperty().addListener(observable -> markDirty(DIRTY_SIZE));
+        knob.heightProperty().addListener(observable -> markDirty(DIRTY_SIZE));
+        knob.minProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.valueProperty().addListener(observable -> rotateKnob());
+        knob.maxProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.minAngleProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.maxAngleProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.showTickMarksProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.showTickLabelsProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.majorTickUnitProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.minorTickCountProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.labelFormatterProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.tickLabelFillProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.tickLabelFontProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.tickMarkFillProperty().addListener(observable -> markDirty(DIRTY_TICKS));
+        knob.sceneProperty().addListener(windowListener);
+        updateWindow();
+    }
+    
+    private static boolean hasOutputScale() {
+        try {
+            Window.class.getMethod("outputScaleXProperty");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Follows the scene and the window of the knob, to listen to the output
+     * scale of the window
+     */
+    private void updateWindow() {
+        if (! OUTPUT_SCALE) {
+            return;
+        }
+        Scene scene = getSkinnable().getScene();
+        if (scene != scaleScene) {
+            if (scaleScene != null) {
+                scaleScene.windowProperty().removeListener(windowListener);
+            }
+            scaleScene = scene;
+            if (scene != null) {
+                scene.windowProperty().addListener(windowListener);
+            }
+        }
+        Window window = scene == null ? null : scene.getWindow();
+        if (window != scaleWindow) {
+            if (scaleWindow != null) {
+                scaleWindow.outputScaleXProperty().removeListener(scaleListener);
+                scaleWindow.outputScaleYProperty().removeListener(scaleListener);
+            }
+            scaleWindow = window;
+            if (window != null) {
+                window.outputScaleXProperty().addListener(scaleListener);
+                window.outputScaleYProperty().addListener(scaleListener);
+            }
+            markDirty(DIRTY_TICKS);
+        }
+    }
+    
+    /**
+     * @return the number of pixels of the screen per pixel of the scene
+     */
+    private double getOutputScale() {
+        Window window = scaleWindow;
+        return window == null ? 1 : Math.max(1, Math.max(window.getOutputScaleX(), window.getOutputScaleY()));
     }
     
     private void initialize() {
@@ -92,8 +222,10 @@ public class KnobSkin extends SkinBase<Knob> {
         knobOutFrame2 = new Region();
         knobOutFrame2.getStyleClass().setAll("knobOutFrame2");
         knobTicks = new Canvas(PREFERRED_WIDTH, PREFERRED_HEIGHT);
-        knobTicks.setMouseTransparent(true);
         ticks = knobTicks.getGraphicsContext2D();
+        tickLayer = new ImageView();
+        tickLayer.setMouseTransparent(true);
+        tickLayer.setSmooth(true);
         knobIn = new Region();
         knobIn.getStyleClass().setAll("knobIn");
         knobInFrame1 = new Region();
@@ -108,144 +240,322 @@ public class KnobSkin extends SkinBase<Knob> {
         
         pane.getChildren().setAll(knobOut, knobOutFrame1, knobOutFrame2, 
                 knobInFrame1, knobInFrame2,
-                knobIn, knobDot, knobTicks);
+                knobIn, knobDot, tickLayer);
         getChildren().setAll(pane);
         
-//        getSkinnable().setOnMousePressed((MouseEvent me) -> {
-//            onDrag=true;
-//            double dragStart = mouseToValue(me.getX(), me.getY());
-//            double zeroOneValue = (getSkinnable().getValue() - getSkinnable().getMin()) / (getSkinnable().getMax() - getSkinnable().getMin());
-//            dragOffset = zeroOneValue - dragStart;
-//            knobPressed(me, dragStart);
-//        });
-//        getSkinnable().setOnMouseReleased((MouseEvent me) -> {
-//            onDrag=false;
-//            knobRelease(me, mouseToValue(me.getX(), me.getY()));
-//        });
-//        getSkinnable().setOnMouseDragged((MouseEvent me) -> {
-//            knobDragged(me, mouseToValue(me.getX(), me.getY()) + dragOffset);
-//        });
-//        
-//        rotateKnob();
+        // handlers, not setOnMouseXXX, to leave those to the application
+        getSkinnable().addEventHandler(MouseEvent.MOUSE_PRESSED, pressedHandler);
+        getSkinnable().addEventHandler(MouseEvent.MOUSE_DRAGGED, draggedHandler);
+        getSkinnable().addEventHandler(MouseEvent.MOUSE_RELEASED, releasedHandler);
     }
     
+    /**
+     * @return the angle of the pointer around the centre of the knob, in 
+     * degrees clockwise from the top, or NaN if it is too close to the centre
+     */
+    private double pointerAngle(double mouseX, double mouseY) {
+        double dx = mouseX - getSkinnable().getWidth()/2;
+        double dy = mouseY - getSkinnable().getHeight()/2;
+        if (Math.hypot(dx, dy) < size * DEAD_ZONE) {
+            return Double.NaN;
+        }
+        return Math.toDegrees(Math.atan2(dx, -dy));
+    }
+    
+    /**
+     * @return the position of the pointer, from 0=min to 1=max, or NaN if it
+     * is too close to the centre. Out of the angles of the knob, the nearest
+     * end
+     */
     private double mouseToValue(double mouseX, double mouseY) {
-        double cx = getSkinnable().getWidth()/2;
-        double cy = getSkinnable().getHeight()/2;
-        double mouseAngle = Math.toDegrees(Math.atan((mouseY-cy) / (mouseX-cx)));
-        double topZeroAngle;
-        if (mouseX<cx) {
-            topZeroAngle = -90 + mouseAngle;
-        } else {
-            topZeroAngle = (90 + mouseAngle);
+        double angle = pointerAngle(mouseX, mouseY);
+        if (Double.isNaN(angle)) {
+            return Double.NaN;
+        }
+        Knob s = getSkinnable();
+        // the same angle, in the turn that starts at the minimum angle
+        double a = s.getMinAngle() + ((angle - s.getMinAngle()) % 360 + 360) % 360;
+        if (a > s.getMaxAngle()) {
+            a = a - s.getMaxAngle() < s.getMinAngle() + 360 - a ? s.getMaxAngle() : s.getMinAngle();
+        }
+        return (a - s.getMinAngle()) / (s.getMaxAngle() - s.getMinAngle());
+    }
+    
+    private void markDirty(int flags) {
+        if ((dirty & flags) != flags) {
+            dirty |= flags;
+            getSkinnable().requestLayout();
         }
-        double value = (topZeroAngle-getSkinnable().getMinAngle()) / 
-                (getSkinnable().getMaxAngle() - getSkinnable().getMinAngle());
-        return value;
     }
     
-    protected void handleControlPropertyChanged(String p) {
-        if (null != p) switch (p) {
-            case "RESIZE":
-                resize();
-                break;
-            case "MIN":
-            case "MAX":
-            case "SHOW_TICK_MARKS":
-            case "SHOW_TICK_LABELS":
-            case "MAJOR_TICK_UNIT":
-            case "MINOR_TICK_COUNT":
-                drawTickMarks(ticks);
-                break;
-             case "TICKS":
-                drawTickMarks(ticks);
-                break;
-            case "VALUE":
-                rotateKnob();
-                break;
-            case "LABEL_FORMATTER":
-                drawTickMarks(ticks);
-                break;
+    /**
+     * Applies the changes since the last pass: at most one resize and one
+     * update of the tick layer, however many properties have changed
+     */
+    @Override
+    protected void layoutChildren(double x, double y, double w, double h) {
+        super.layoutChildren(x, y, w, h);
+        metrics.layout();
+        int flags = dirty;
+        dirty = 0;
+        if ((flags & DIRTY_SIZE) != 0) {
+            // updates the tick layer too
+            resize();
+        } else if ((flags & DIRTY_TICKS) != 0) {
+            updateTickLayer();
+        }
+    }
+    
+    
+    /**
+     * Shows the tick layer for the current configuration and size, from the
+     * shared cache, rendering it only if it isn't there. The layer is
+     * rendered at the output scale of the window, so it stays sharp on high
+     * density screens, and shown at the size of the knob.
+     */
+    private void updateTickLayer() {
+        metrics.tickUpdated();
+        Knob s = getSkinnable();
+        if (size <= 0 || ! (s.isShowTickMarks() || s.isShowTickLabels())) {
+            tickKey = null;
+            tickLayer.setImage(null);
+            return;
+        }
+        TickLayerCache.Key key = new TickLayerCache.Key(s, TickLayerCache.bucket(size), getOutputScale());
+        if (! key.equals(tickKey)) {
+            tickKey = key;
+            tickLayer.setImage(TickLayerCache.get(key, () -> renderTickLayer(key.getBucket(), key.getScale())));
         }
+        tickLayer.setFitWidth(size);
+        tickLayer.setFitHeight(size);
     }
     
-    private void drawTickMarks(final GraphicsContext CTX) {        
+    private Image renderTickLayer(int bucket, double scale) {
+        boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        // drawn at the pixels of the screen: a scaled snapshot of a smaller
+        // canvas would only scale its pixels
+        double pixels = Math.ceil(bucket * scale);
+        knobTicks.setWidth(pixels);
+        knobTicks.setHeight(pixels);
+        ticks.save();
+        ticks.scale(pixels / bucket, pixels / bucket);
+        drawTickMarks(ticks, bucket);
+        ticks.restore();
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        Image image = knobTicks.snapshot(parameters, null);
+        metrics.tickRedrawn(timed ? System.nanoTime() - start : -1);
+        return image;
+    }
+    
+    // package private for the benchmarks
+    void drawTickMarks(final GraphicsContext CTX) {
+        drawTickMarks(CTX, size);
+    }
+    
+    private void drawTickMarks(final GraphicsContext CTX, final double size) {        
         CTX.clearRect(0, 0, size, size);
         CTX.setLineCap(StrokeLineCap.ROUND);
         Knob s = getSkinnable();
         if(s.isShowTickMarks() || s.isShowTickLabels()){
-            int numMajorTicks=(int)((s.getMax()-s.getMin())/s.getMajorTickUnit())+1;
-            int numMinorTicks=(numMajorTicks-1)*s.getMinorTickCount();
-            int totalTicks=numMajorTicks+numMinorTicks;
-            double minor=s.getMajorTickUnit();
-            if (s.getMinorTickCount() != 0) {
-                minor = minor / (double) (Math.max(s.getMinorTickCount(), 0) + 1);
-            }
-            Point2D center = new Point2D(size * 0.5, size * 0.5);
-            Font old=getSkinnable().getTickLabelFont();
-            for(int i=0;i<totalTicks;i++){
-                boolean isMinor=true;
-                if(i*minor%s.getMajorTickUnit()==0){
-                    isMinor=false;
-                }
-                Font font = Font.font(old.getFamily(), 
-                    old.getName().contains("Bold")?FontWeight.BOLD:FontWeight.NORMAL, 
-                    old.getName().contains("Italic")?FontPosture.ITALIC:FontPosture.REGULAR,
-                    isMinor? size * 0.04 : size * 0.06);
-                double zeroOneValue = (i*minor-s.getMin()) / (s.getMax() - s.getMin());
-                double angle = s.getMinAngle() + ((s.getMaxAngle() - s.getMinAngle()) * zeroOneValue);
-                if(s.isShowTickMarks()){
-                    CTX.setStroke(getSkinnable().getTickMarkFill());  
-                    CTX.setLineWidth(size * (isMinor?0.002:0.004));  
-                    Point2D innerPoint = new Point2D(center.getX() + size * 0.445 * Math.sin(Math.toRadians(angle)), 
-                                                     center.getY() - size * 0.445 * Math.cos(Math.toRadians(angle)));            
-                    Point2D outerPoint = new Point2D(center.getX() + size * (isMinor?0.47:0.48) * Math.sin(Math.toRadians(angle)), 
-                                                     center.getY() - size * (isMinor?0.47:0.48) * Math.cos(Math.toRadians(angle)));            
-                    CTX.strokeLine(innerPoint.getX(), innerPoint.getY(), outerPoint.getX(), outerPoint.getY()); 
-                    
+            updateTicks();
+            double cx = size * 0.5;
+            double cy = size * 0.5;
+            if(s.isShowTickMarks()){
+                CTX.setStroke(s.getTickMarkFill());
+                // minor ticks first, then major ones, to set the width twice
+                for (int pass = 0; pass < 2; pass++) {
+                    boolean minor = pass == 0;
+                    double inner = size * 0.445;
+                    double outer = size * (minor ? 0.47 : 0.48);
+                    CTX.setLineWidth(size * (minor ? 0.002 : 0.004));
+                    for (int i = 0; i < tickCount; i++) {
+                        if (tickMinor[i] == minor) {
+                            CTX.strokeLine(cx + inner * tickSin[i], cy - inner * tickCos[i], 
+                                    cx + outer * tickSin[i], cy - outer * tickCos[i]);
+                        }
+                    }
                 }
-                if(s.isShowTickLabels()){
-                    Point2D textPoint = new Point2D(center.getX() + size * 0.41 * Math.sin(Math.toRadians(angle)), 
-                                                    center.getY() - size * 0.41 * Math.cos(Math.toRadians(angle)));            
-                    // Draw text
-                    CTX.save();
-                    CTX.translate(textPoint.getX(), textPoint.getY());
-                    CTX.rotate(angle);
-                    CTX.setFont(font);
-                    CTX.setTextAlign(TextAlignment.CENTER);
-                    CTX.setTextBaseline(VPos.CENTER);
-                    CTX.setFill(getSkinnable().getTickLabelFill());
-                    
-                    if (getSkinnable().getLabelFormatter() != null) {
-                        CTX.fillText(getSkinnable().getLabelFormatter().toString((i*minor-s.getMin())), 0, 0);
-                    } else {
-                        CTX.fillText(String.format("%d", (int) (i*minor-s.getMin())), 0, 0);
+            }
+            if(s.isShowTickLabels()){
+                updateTickFonts(size);
+                double radius = size * 0.41;
+                CTX.save();
+                CTX.setTextAlign(TextAlignment.CENTER);
+                CTX.setTextBaseline(VPos.CENTER);
+                CTX.setFill(s.getTickLabelFill());
+                // the labels are placed on top of the transform of the
+                // context, like the output scale of the tick layer
+                Affine base = CTX.getTransform();
+                double bxx = base.getMxx(), bxy = base.getMxy(), btx = base.getTx();
+                double byx = base.getMyx(), byy = base.getMyy(), bty = base.getTy();
+                for (int pass = 0; pass < 2; pass++) {
+                    boolean minor = pass == 0;
+                    CTX.setFont(minor ? minorFont : majorFont);
+                    for (int i = 0; i < tickCount; i++) {
+                        if (tickMinor[i] == minor) {
+                            // translate to the label and rotate it, in one go
+                            double c = tickCos[i], n = tickSin[i];
+                            double x = cx + radius * n, y = cy - radius * c;
+                            CTX.setTransform(bxx * c + bxy * n, byx * c + byy * n, 
+                                    bxy * c - bxx * n, byy * c - byx * n, 
+                                    bxx * x + bxy * y + btx, byx * x + byy * y + bty);
+                            CTX.fillText(tickText[i], 0, 0);
+                        }
                     }
-                    CTX.restore();
-
                 }
+                CTX.restore();
             }
         }
                 
     }
     
+    /**
+     * Computes the angles, unit vectors and labels of the ticks, if any of 
+     * the properties they depend on has changed since the last time
+     */
+    private void updateTicks() {
+        Knob s = getSkinnable();
+        if (s.getMin() == keyMin && s.getMax() == keyMax && s.getMajorTickUnit() == keyMajorTickUnit &&
+                s.getMinorTickCount() == keyMinorTickCount && s.getLabelFormatter() == keyFormatter &&
+                s.getMinAngle() == keyMinAngle && s.getMaxAngle() == keyMaxAngle) {
+            return;
+        }
+        keyMin = s.getMin();
+        keyMax = s.getMax();
+        keyMajorTickUnit = s.getMajorTickUnit();
+        keyMinorTickCount = s.getMinorTickCount();
+        keyFormatter = s.getLabelFormatter();
+        keyMinAngle = s.getMinAngle();
+        keyMaxAngle = s.getMaxAngle();
+        
+        int numMajorTicks=(int)((s.getMax()-s.getMin())/s.getMajorTickUnit())+1;
+        int numMinorTicks=(numMajorTicks-1)*s.getMinorTickCount();
+        tickCount=numMajorTicks+numMinorTicks;
+        if (tickSin.length < tickCount) {
+            tickSin = new double[tickCount];
+            tickCos = new double[tickCount];
+            tickMinor = new boolean[tickCount];
+            tickText = new String[tickCount];
+        }
+        double minor=s.getMajorTickUnit();
+        if (s.getMinorTickCount() != 0) {
+            minor = minor / (double) (Math.max(s.getMinorTickCount(), 0) + 1);
+        }
+        for(int i=0;i<tickCount;i++){
+            tickMinor[i] = i*minor%s.getMajorTickUnit()!=0;
+            double zeroOneValue = (i*minor-s.getMin()) / (s.getMax() - s.getMin());
+            double angle = Math.toRadians(s.getMinAngle() + ((s.getMaxAngle() - s.getMinAngle()) * zeroOneValue));
+            tickSin[i] = Math.sin(angle);
+            tickCos[i] = Math.cos(angle);
+            tickText[i] = keyFormatter != null ? keyFormatter.toString(i*minor-s.getMin()) : 
+                    tickLabels.get((int) (i*minor-s.getMin()));
+        }
+    }
+    
+    /**
+     * Derives the fonts of the major and minor tick labels from the tick
+     * label font, if it or the size have changed since the last time
+     */
+    private void updateTickFonts(double size) {
+        Font old = getSkinnable().getTickLabelFont();
+        if (old == keyFont && size == keySize) {
+            return;
+        }
+        keyFont = old;
+        keySize = size;
+        FontWeight weight = old.getName().contains("Bold") ? FontWeight.BOLD : FontWeight.NORMAL;
+        FontPosture posture = old.getName().contains("Italic") ? FontPosture.ITALIC : FontPosture.REGULAR;
+        majorFont = Font.font(old.getFamily(), weight, posture, size * 0.06);
+        minorFont = Font.font(old.getFamily(), weight, posture, size * 0.04);
+    }
+    
+    /**
+     * Sets the target of the rotation. The timer, started only if it isn't 
+     * running, moves the knob towards it once per pulse, so a value that 
+     * changes faster than the animation only updates the target.
+     */
     private void rotateKnob() {
         Knob s = getSkinnable();
         double zeroOneValue = (s.getValue()-s.getMin()) / (s.getMax() - s.getMin());
         double angle = getSkinnable().getMinAngle() + ((getSkinnable().getMaxAngle() - getSkinnable().getMinAngle()) * zeroOneValue);
-        if(onDrag){
+        if(onDrag || flinging){
+            stopRotation();
+            currentAngle = targetAngle = angle;
             knobIn.setRotate(angle);
         } else {
-            if(rot!=null){
-                rot.stop();
+            if (! rotating) {
+                currentAngle = knobIn.getRotate();
+                angularVelocity = 0;
+            }
+            if (s.getMaxAngle() - s.getMinAngle() >= 360) {
+                // on a full dial, turn the shortest way
+                double delta = (angle - currentAngle) % 360;
+                if (delta > 180) {
+                    delta -= 360;
+                } else if (delta < -180) {
+                    delta += 360;
+                }
+                targetAngle = currentAngle + delta;
+            } else {
+                targetAngle = angle;
+            }
+            if (! rotating) {
+                rotating = true;
+                lastPulse = 0;
+                rotation.start();
             }
-            rot=new RotateTransition(Duration.millis(500),knobIn);
-            rot.setToAngle(angle);
-            rot.play();
         }
     }
     
+    /**
+     * Critically damped spring towards the target angle, that follows a 
+     * moving target without overshooting it
+     */
+    private void stepRotation(long now) {
+        if (lastPulse == 0) {
+            lastPulse = now;
+            return;
+        }
+        double dt = Math.min(0.1, (now - lastPulse) / 1e9);
+        lastPulse = now;
+        double omega = 2 / SMOOTH_TIME;
+        double x = omega * dt;
+        double exp = 1 / (1 + x + 0.48 * x * x + 0.235 * x * x * x);
+        double change = currentAngle - targetAngle;
+        double temp = (angularVelocity + omega * change) * dt;
+        angularVelocity = (angularVelocity - omega * temp) * exp;
+        currentAngle = targetAngle + (change + temp) * exp;
+        if (Math.abs(targetAngle - currentAngle) < SETTLED_ANGLE && Math.abs(angularVelocity) < SETTLED_ANGLE) {
+            currentAngle = targetAngle;
+            stopRotation();
+        }
+        knobIn.setRotate(currentAngle);
+        metrics.rotationUpdated();
+    }
+    
+    private void stopRotation() {
+        if (rotating) {
+            rotation.stop();
+            rotating = false;
+            angularVelocity = 0;
+        }
+    }
+    
+    @Override
+    public void dispose() {
+        stopRotation();
+        input.stop();
+        getSkinnable().removeEventHandler(MouseEvent.MOUSE_PRESSED, pressedHandler);
+        getSkinnable().removeEventHandler(MouseEvent.MOUSE_DRAGGED, draggedHandler);
+        getSkinnable().removeEventHandler(MouseEvent.MOUSE_RELEASED, releasedHandler);
+        super.dispose();
+    }
+    
     private void resize() {
+        boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
         size = getSkinnable().getWidth() < getSkinnable().getHeight() ? getSkinnable().getWidth() : getSkinnable().getHeight();
         
         if (size > 0) {
@@ -274,51 +584,122 @@ public class KnobSkin extends SkinBase<Knob> {
             dotRotate.setPivotX(size * 0.01);
             dotRotate.setPivotY(size * 0.24);
             
-            knobTicks.relocate(0,0);
-            knobTicks.setWidth(size);
-            knobTicks.setHeight(size);
-            ticks.clearRect(0, 0, size, size);        
-            drawTickMarks(ticks);
-            knobTicks.setCache(true);
-            knobTicks.setCacheHint(CacheHint.QUALITY);
+            tickLayer.relocate(0,0);
+            updateTickLayer();
         }
+        metrics.resized(timed ? System.nanoTime() - start : -1);
     }
     
-    /**
-     * @param e
-     * @param position The position of mouse in 0=min to 1=max range
-     */
-    private void knobRelease(MouseEvent e, double position) {
-        final Knob slider = getSkinnable();
-        slider.setValueChanging(false);
-        // detect click rather than drag
-        if(Math.abs(e.getX()-dragStartX) < 3 && Math.abs(e.getY()-dragStartY) < 3) {
-            slider.adjustValue((position+slider.getMin()) * (slider.getMax()-slider.getMin()));
-        }
-    }
-
-     /**
-     * @param e
-     * @param position The position of mouse in 0=min to 1=max range
-     */
-    private void knobPressed(MouseEvent e, double position) {
+    private void knobPressed(MouseEvent e) {
         // If not already focused, request focus
         final Knob slider = getSkinnable();
         if (!slider.isFocused()){
             slider.requestFocus();
         }
-        slider.setValueChanging(true);
+        flinging = false;
+        onDrag = true;
         dragStartX = e.getX();
         dragStartY = e.getY();
+        dragPosition = (slider.getValue() - slider.getMin()) / (slider.getMax() - slider.getMin());
+        lastPointerAngle = pointerAngle(e.getX(), e.getY());
+        lastDragNanos = System.nanoTime();
+        flingVelocity = 0;
+        slider.setValueChanging(true);
+        lastInputPulse = 0;
+        input.start();
     }
 
     /**
-     * @param e
-     * @param position The position of mouse in 0=min to 1=max range
+     * Moves the drag position by the angle the pointer has turned since the
+     * previous event, so it doesn't jump when the pointer crosses the top of
+     * a full dial. Only fields are written: events may come much faster than
+     * pulses.
      */
-    private void knobDragged(MouseEvent e, double position) {
+    private void knobDragged(MouseEvent e) {
+        if (!onDrag) {
+            return;
+        }
+        metrics.dragged();
         final Knob slider = getSkinnable();
-        slider.adjustValue((position+slider.getMin()) * (slider.getMax()-slider.getMin()));
+        double angle = pointerAngle(e.getX(), e.getY());
+        if (!Double.isNaN(angle) && !Double.isNaN(lastPointerAngle) && slider.getMaxAngle() > slider.getMinAngle()) {
+            double delta = (angle - lastPointerAngle) % 360;
+            if (delta > 180) {
+                delta -= 360;
+            } else if (delta < -180) {
+                delta += 360;
+            }
+            double step = delta / (slider.getMaxAngle() - slider.getMinAngle());
+            dragPosition = Math.max(0, Math.min(1, dragPosition + step));
+            dragPending = true;
+            long now = System.nanoTime();
+            double dt = (now - lastDragNanos) / 1e9;
+            lastDragNanos = now;
+            if (dt > 0) {
+                // smoothed, single events are noisy
+                flingVelocity += 0.3 * (step / dt - flingVelocity);
+            }
+        }
+        lastPointerAngle = angle;
+    }
+
+    private void knobReleased(MouseEvent e) {
+        if (!onDrag) {
+            return;
+        }
+        onDrag = false;
+        // detect click rather than drag
+        if(Math.abs(e.getX()-dragStartX) < 3 && Math.abs(e.getY()-dragStartY) < 3) {
+            double position = mouseToValue(e.getX(), e.getY());
+            if (!Double.isNaN(position)) {
+                dragPosition = position;
+                dragPending = true;
+            }
+            flingVelocity = 0;
+        } else if (System.nanoTime() - lastDragNanos > FLING_MAX_IDLE) {
+            // the pointer stopped before it was released
+            flingVelocity = 0;
+        }
+        flinging = Math.abs(flingVelocity) >= FLING_MIN_SPEED;
+        if (!flinging) {
+            endInput();
+        }
+    }
+    
+    /**
+     * Applies the drag position, and moves it while flinging, with a speed
+     * that decays exponentially, until it stops or reaches an end
+     */
+    private void stepInput(long now) {
+        double dt = lastInputPulse == 0 ? 0 : Math.min(0.1, (now - lastInputPulse) / 1e9);
+        lastInputPulse = now;
+        if (flinging) {
+            dragPosition += flingVelocity * dt;
+            flingVelocity *= Math.exp(-dt / FLING_TIME);
+            dragPending = true;
+            if (dragPosition <= 0 || dragPosition >= 1 || Math.abs(flingVelocity) < FLING_STOP_SPEED) {
+                dragPosition = Math.max(0, Math.min(1, dragPosition));
+                flinging = false;
+                endInput();
+                return;
+            }
+        }
+        applyDrag();
+    }
+    
+    private void applyDrag() {
+        if (dragPending) {
+            dragPending = false;
+            final Knob slider = getSkinnable();
+            slider.adjustValue(slider.getMin() + dragPosition * (slider.getMax() - slider.getMin()));
+            metrics.dragApplied();
+        }
+    }
+    
+    private void endInput() {
+        applyDrag();
+        input.stop();
+        getSkinnable().setValueChanging(false);
     }
     
 }
@@ -0,0 +1,183 @@
+package com.gluonhq.control.roundslider;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.util.StringConverter;
+
+/**
+ * Least recently used cache of the rasterized tick layers of the knobs,
+ * shared by all the instances and bounded in bytes.
+ * <p>
+ * Layers are rendered at a size bucket, slightly larger than the knob, and
+ * scaled down when shown, so knobs with the same configuration and similar
+ * sizes share one image, and resizing a knob within its bucket doesn't
+ * render the ticks again. The bucket is in pixels of the scene, and the
+ * image has as many pixels as the screen shows for it, so the output scale
+ * is part of the key. It has to be used from the JavaFX Application
+ * Thread.
+ */
+final class TickLayerCache {
+
+    /**
+     * The maximum size of the cached images, in bytes
+     */
+    static final long MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final LinkedHashMap<Key, Image> IMAGES = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytes;
+    private static long hits, misses, evictions;
+
+    private TickLayerCache() {
+    }
+
+    /**
+     * @return the size at which a layer of the given size is rendered: the
+     * size rounded up to a step of about 1/16 of it
+     */
+    static int bucket(double size) {
+        int step = Math.max(4, Integer.highestOneBit(Math.max(1, (int) size)) / 16);
+        return (int) Math.ceil(size / step) * step;
+    }
+
+    /**
+     * @param key the configuration and size bucket of the layer
+     * @param renderer renders the layer at the size of the bucket, if it
+     * isn't cached
+     * @return the layer
+     */
+    static Image get(Key key, Supplier<Image> renderer) {
+        Image image = IMAGES.get(key);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        misses++;
+        image = renderer.get();
+        long size = bytes(image);
+        if (size <= MAX_BYTES) {
+            IMAGES.put(key, image);
+            bytes += size;
+            Iterator<Image> eldest = IMAGES.values().iterator();
+            while (bytes > MAX_BYTES) {
+                bytes -= bytes(eldest.next());
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return image;
+    }
+
+    private static long bytes(Image image) {
+        return 4L * (long) image.getWidth() * (long) image.getHeight();
+    }
+
+    static long getBytes() {
+        return bytes;
+    }
+
+    static long getHits() {
+        return hits;
+    }
+
+    static long getMisses() {
+        return misses;
+    }
+
+    static long getEvictions() {
+        return evictions;
+    }
+
+    static void clear() {
+        IMAGES.clear();
+        bytes = 0;
+    }
+
+    /**
+     * The properties of a knob that its tick layer depends on
+     */
+    static final class Key {
+
+        private final double min, max, majorTickUnit, minAngle, maxAngle;
+        private final int minorTickCount;
+        private final boolean showTickMarks, showTickLabels;
+        private final StringConverter<Double> labelFormatter;
+        private final Font tickLabelFont;
+        private final Paint tickLabelFill, tickMarkFill;
+        private final int bucket;
+        private final double scale;
+
+        Key(Knob knob, int bucket, double scale) {
+            this.min = knob.getMin();
+            this.max = knob.getMax();
+            this.majorTickUnit = knob.getMajorTickUnit();
+            this.minAngle = knob.getMinAngle();
+            this.maxAngle = knob.getMaxAngle();
+            this.minorTickCount = knob.getMinorTickCount();
+            this.showTickMarks = knob.isShowTickMarks();
+            this.showTickLabels = knob.isShowTickLabels();
+            this.labelFormatter = knob.getLabelFormatter();
+            this.tickLabelFont = knob.getTickLabelFont();
+            this.tickLabelFill = knob.getTickLabelFill();
+            this.tickMarkFill = knob.getTickMarkFill();
+            this.bucket = bucket;
+            this.scale = scale;
+        }
+
+        int getBucket() {
+            return bucket;
+        }
+
+        /**
+         * @return the pixels of the screen per pixel of the scene
+         */
+        double getScale() {
+            return scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return bucket == k.bucket && Double.compare(scale, k.scale) == 0 && minorTickCount == k.minorTickCount &&
+                    showTickMarks == k.showTickMarks && showTickLabels == k.showTickLabels &&
+                    Double.compare(min, k.min) == 0 && Double.compare(max, k.max) == 0 &&
+                    Double.compare(majorTickUnit, k.majorTickUnit) == 0 &&
+                    Double.compare(minAngle, k.minAngle) == 0 && Double.compare(maxAngle, k.maxAngle) == 0 &&
+                    // formatters have no equality, the same instance is needed
+                    labelFormatter == k.labelFormatter &&
+                    Objects.equals(tickLabelFont, k.tickLabelFont) &&
+                    Objects.equals(tickLabelFill, k.tickLabelFill) &&
+                    Objects.equals(tickMarkFill, k.tickMarkFill);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = bucket;
+            h = 31 * h + Double.hashCode(scale);
+            h = 31 * h + minorTickCount;
+            h = 31 * h + (showTickMarks ? 1 : 0);
+            h = 31 * h + (showTickLabels ? 1 : 0);
+            h = 31 * h + Double.hashCode(min);
+            h = 31 * h + Double.hashCode(max);
+            h = 31 * h + Double.hashCode(majorTickUnit);
+            h = 31 * h + Double.hashCode(minAngle);
+            h = 31 * h + Double.hashCode(maxAngle);
+            h = 31 * h + System.identityHashCode(labelFormatter);
+            h = 31 * h + Objects.hashCode(tickLabelFont);
+            h = 31 * h + Objects.hashCode(tickLabelFill);
+            h = 31 * h + Objects.hashCode(tickMarkFill);
+            return h;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.gluonhq.format;
+
+import java.util.Arrays;
+
+/**
+ * Reusable text buffer that formats numbers and times without allocating.
+ * <p>
+ * The content is written into a char array that only grows when needed.
+ * {@link #toString()} returns the same String instance while the content
+ * doesn't change, so a label that shows a value that didn't change gets the
+ * same text, and a new String is created only when the text is different.
+ * <p>
+ * Typical use, once per frame:
+ * <pre>
+ * label.setText(formatter.clear().append("X: ").append(x, 4).append(" m/s\u00b2").toString());
+ * </pre>
+ * Instances are not thread safe.
+ */
+public final class CharFormatter implements CharSequence {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+        100_000_000L, 1_000_000_000L
+    };
+    private static final int MAX_DECIMALS = POWERS_OF_TEN.length - 1;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private char[] chars;
+    private int length;
+    private String text;
+
+    public CharFormatter() {
+        this(32);
+    }
+
+    /**
+     * @param capacity the initial capacity of the buffer
+     */
+    public CharFormatter(int capacity) {
+        chars = new char[Math.max(1, capacity)];
+    }
+
+    /**
+     * Removes the content
+     * @return this formatter
+     */
+    public CharFormatter clear() {
+        length = 0;
+        return this;
+    }
+
+    public CharFormatter append(char c) {
+        ensureCapacity(length + 1);
+        chars[length++] = c;
+        return this;
+    }
+
+    public CharFormatter append(CharSequence s) {
+        int n = s.length();
+        ensureCapacity(length + n);
+        for (int i = 0; i < n; i++) {
+            chars[length++] = s.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Appends an integer value, like {@link Long#toString(long)}
+     * @param value the value
+     * @return this formatter
+     */
+    public CharFormatter append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append("-9223372036854775808");
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        appendDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * Appends a decimal value with a fixed number of decimals, rounded half
+     * up, like <code>String.format("%.nf", value)</code>, but always with a dot
+     * as decimal separator, and without sign when the rounded value is zero.
+     * @param value the value
+     * @param decimals the number of decimals, from 0 to 9
+     * @return this formatter
+     */
+    public CharFormatter append(double value, int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Decimals must be between 0 and " + MAX_DECIMALS);
+        }
+        if (Double.isNaN(value)) {
+            return append("NaN");
+        }
+        boolean negative = value < 0;
+        double abs = Math.abs(value);
+        long pow = POWERS_OF_TEN[decimals];
+        if (Double.isInfinite(value) || abs * pow >= Long.MAX_VALUE) {
+            return append(negative ? "-Infinity" : "Infinity");
+        }
+        long scaled = Math.round(abs * pow);
+        if (negative && scaled != 0) {
+            append('-');
+        }
+        appendDigits(scaled / pow, 1);
+        if (decimals > 0) {
+            append('.');
+            appendDigits(scaled % pow, decimals);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the local time of the given instant, in the default time zone,
+     * with the pattern <code>HH:mm:ss:SSS</code>
+     * @param epochMillis the instant, in epoch milliseconds
+     * @return this formatter
+     */
+    public CharFormatter appendTime(long epochMillis) {
+        long millisOfDay = Math.floorMod(ZoneOffsetCache.toLocalMillis(epochMillis), MILLIS_PER_DAY);
+        appendDigits(millisOfDay / 3_600_000L, 2);
+        append(':');
+        appendDigits(millisOfDay / 60_000L % 60, 2);
+        append(':');
+        appendDigits(millisOfDay / 1_000L % 60, 2);
+        append(':');
+        appendDigits(millisOfDay % 1_000L, 3);
+        return this;
+    }
+
+    /**
+     * Appends a positive value, padded with zeros to a minimum number of digits
+     */
+    private void appendDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        ensureCapacity(length + digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, 2 * chars.length));
+        }
+    }
+
+    /**
+     * @param s the text to compare to
+     * @return true if the content is equal to the given text
+     */
+    public boolean contentEquals(CharSequence s) {
+        if (s == null || s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * @return the content, reusing the String returned by the previous call
+     * if the content is the same
+     */
+    @Override
+    public String toString() {
+        if (! contentEquals(text)) {
+            text = new String(chars, 0, length);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,65 @@
+package com.gluonhq.format;
+
+/**
+ * Direct-mapped cache of formatted decimal values, for values that repeat,
+ * like a heading with one decimal or the labels of tick marks.
+ * <p>
+ * Each value is rounded to the given number of decimals, and the String for
+ * it is created the first time only: once the cache is warm, getting the text
+ * of a value doesn't allocate. When two values map to the same slot, the
+ * newest one replaces the oldest one.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class DecimalStringCache {
+
+    private final int decimals;
+    private final double scale;
+    private final String prefix;
+    private final String suffix;
+    private final long[] keys;
+    private final String[] strings;
+    private final int shift;
+    private final CharFormatter formatter = new CharFormatter();
+
+    /**
+     * Creates a new cache
+     * @param decimals the number of decimals
+     * @param prefix text added before the value
+     * @param suffix text added after the value
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    public DecimalStringCache(int decimals, String prefix, String suffix, int capacity) {
+        this.decimals = decimals;
+        this.scale = Math.pow(10, decimals);
+        this.prefix = prefix == null ? "" : prefix;
+        this.suffix = suffix == null ? "" : suffix;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.keys = new long[size];
+        this.strings = new String[size];
+        this.shift = 64 - Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * @param value the value
+     * @return the formatted value, with prefix and suffix
+     */
+    public String get(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return format(value);
+        }
+        long key = Math.round(value * scale);
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> shift);
+        String s = strings[slot];
+        if (s == null || keys[slot] != key) {
+            s = format(key / scale);
+            keys[slot] = key;
+            strings[slot] = s;
+        }
+        return s;
+    }
+
+    private String format(double value) {
+        return formatter.clear().append(prefix).append(value, decimals).append(suffix).toString();
+    }
+}
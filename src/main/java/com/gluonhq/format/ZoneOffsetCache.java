@@ -0,0 +1,112 @@
+package com.gluonhq.format;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Caches the offset of the system default time zone, together with the
+ * interval between the two transitions around it, so converting an instant to
+ * local time only needs an addition, until a transition, like a daylight saving
+ * change, is crossed.
+ * <p>
+ * The default time zone is read once. Call {@link #reset()} if it changes.
+ */
+public final class ZoneOffsetCache {
+
+    private static volatile Entry entry;
+
+    private ZoneOffsetCache() {
+    }
+
+    /**
+     * @param epochMillis the instant, in epoch milliseconds
+     * @return the offset of the default time zone at the given instant
+     */
+    public static ZoneOffset getOffset(long epochMillis) {
+        return entry(epochMillis).offset;
+    }
+
+    /**
+     * @param epochMillis the instant, in epoch milliseconds
+     * @return the offset of the default time zone at the given instant, in milliseconds
+     */
+    public static long getOffsetMillis(long epochMillis) {
+        return entry(epochMillis).offsetMillis;
+    }
+
+    /**
+     * @param epochMillis the instant, in epoch milliseconds
+     * @return the local time at the given instant, in milliseconds since the
+     * local epoch
+     */
+    public static long toLocalMillis(long epochMillis) {
+        return epochMillis + getOffsetMillis(epochMillis);
+    }
+
+    /**
+     * Converts a local date time of the default time zone to epoch milliseconds,
+     * without the allocations of <code>atZone(ZoneId.systemDefault()).toInstant()</code>.
+     * During the gap or the overlap of a transition the result can be off by
+     * the transition amount.
+     * @param dateTime the local date time
+     * @return the instant, in epoch milliseconds
+     */
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        long local = dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000;
+        Entry e = entry;
+        if (e == null || ! e.contains(local - e.offsetMillis)) {
+            e = entry(local - getOffsetMillis(local));
+        }
+        return local - e.offsetMillis;
+    }
+
+    /**
+     * Forgets the cached time zone and offset
+     */
+    public static void reset() {
+        entry = null;
+    }
+
+    private static Entry entry(long epochMillis) {
+        Entry e = entry;
+        if (e == null || ! e.contains(epochMillis)) {
+            ZoneId zone = e == null ? ZoneId.systemDefault() : e.zone;
+            e = new Entry(zone, epochMillis);
+            entry = e;
+        }
+        return e;
+    }
+
+    private static final class Entry {
+        private final ZoneId zone;
+        private final ZoneOffset offset;
+        private final long offsetMillis;
+        private final long from;
+        private final long until;
+
+        Entry(ZoneId zone, long epochMillis) {
+            this.zone = zone;
+            ZoneRules rules = zone.getRules();
+            Instant instant = Instant.ofEpochMilli(epochMillis);
+            this.offset = rules.getOffset(instant);
+            this.offsetMillis = offset.getTotalSeconds() * 1000L;
+            if (rules.isFixedOffset()) {
+                from = Long.MIN_VALUE;
+                until = Long.MAX_VALUE;
+            } else {
+                ZoneOffsetTransition previous = rules.previousTransition(instant);
+                ZoneOffsetTransition next = rules.nextTransition(instant);
+                from = previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000;
+                until = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+            }
+        }
+
+        boolean contains(long epochMillis) {
+            return epochMillis >= from && epochMillis < until;
+        }
+    }
+}
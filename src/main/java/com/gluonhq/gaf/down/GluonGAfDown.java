@@ -1,6 +1,7 @@
 package com.gluonhq.gaf.down;
 
 import com.gluonhq.charm.down.Platform;
+import com.gluonhq.gaf.down.service.SimulatedSensors;
 import com.gluonhq.gaf.down.views.AppViewManager;
 import com.gluonhq.charm.glisten.application.MobileApplication;
 import com.gluonhq.charm.glisten.visual.Swatch;
@@ -35,6 +36,9 @@ public class GluonGAfDown extends MobileApplication {
     public void init() {
         System.setProperty("com.gluonhq.charm.down.debug", "true");
         
+        // -Dgaf.sensors=synthetic|replay, to use the sensor views on desktop
+        SimulatedSensors.install();
+        
         AppViewManager.registerViewsAndDrawer(this);
     }
 
@@ -0,0 +1,121 @@
+package com.gluonhq.gaf.down.chart;
+
+import java.util.Arrays;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.scene.control.Control;
+import javafx.scene.control.Skin;
+
+/**
+ * Chart of the magnitudes of a frequency spectrum, from 0 Hz to the Nyquist
+ * frequency, drawn on a canvas.
+ * <p>
+ * The spectrum is set with {@link #update(double[], int, double)}, usually
+ * once per frame, and the vertical scale follows its peak.
+ */
+public class SpectrumChart extends Control {
+
+    private double[] magnitudes = new double[0];
+    private int bins;
+    private double sampleRate;
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    public SpectrumChart() {
+        getStyleClass().setAll(DEFAULT_STYLE_CLASS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return
+     */
+    @Override public String getUserAgentStylesheet() {
+        return SpectrumChart.class.getResource("spectrumchart.css").toExternalForm();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return
+     */
+    @Override protected Skin<?> createDefaultSkin() {
+        return new SpectrumChartSkin(this);
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Sets and draws a new spectrum. It has to be called from the JavaFX
+     * Application Thread.
+     * @param magnitudes the magnitudes of the bins, that are copied
+     * @param bins the number of bins, from 0 Hz to half the sample rate
+     * @param sampleRate the sample rate of the signal, in Hz
+     */
+    public void update(double[] magnitudes, int bins, double sampleRate) {
+        if (this.magnitudes.length < bins) {
+            this.magnitudes = new double[bins];
+        }
+        System.arraycopy(magnitudes, 0, this.magnitudes, 0, bins);
+        this.bins = bins;
+        this.sampleRate = sampleRate;
+        if (getSkin() instanceof SpectrumChartSkin) {
+            ((SpectrumChartSkin) getSkin()).draw();
+        }
+    }
+
+    /**
+     * Removes the spectrum
+     */
+    public void clear() {
+        Arrays.fill(magnitudes, 0);
+        bins = 0;
+        sampleRate = 0;
+        if (getSkin() instanceof SpectrumChartSkin) {
+            ((SpectrumChartSkin) getSkin()).draw();
+        }
+    }
+
+    double getMagnitude(int bin) {
+        return magnitudes[bin];
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Properties                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    // --- title
+    private final StringProperty title = new SimpleStringProperty(this, "title");
+    public final StringProperty titleProperty() {
+        return title;
+    }
+    public final String getTitle() {
+        return title.get();
+    }
+    public final void setTitle(String value) {
+        title.set(value);
+    }
+
+     /**************************************************************************
+    *                                                                         *
+    * Stylesheet Handling                                                     *
+    *                                                                         *
+    **************************************************************************/
+    private static final String DEFAULT_STYLE_CLASS = "spectrum-chart";
+}
@@ -0,0 +1,173 @@
+package com.gluonhq.gaf.down.chart;
+
+import com.gluonhq.format.CharFormatter;
+import com.gluonhq.format.DecimalStringCache;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.SkinBase;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Skin for {@link SpectrumChart}.
+ * <p>
+ * The spectrum is drawn on a single canvas, as a filled area with one column
+ * per pixel: when there are more bins than pixels, each column shows the
+ * largest magnitude of its bins. The vertical scale jumps up to new peaks and
+ * decays slowly, so it doesn't flicker.
+ */
+public class SpectrumChartSkin extends SkinBase<SpectrumChart> {
+    private static final double      AXIS_HEIGHT       = 24;
+    private static final double      TICK_LENGTH       = 5;
+    private static final double      MIN_TICK_SPACING  = 80;
+    private static final double      SCALE_DECAY       = 0.98;
+    private static final Color       AXIS_COLOR        = Color.GRAY;
+    private static final Color       GRID_COLOR        = Color.web("#e0e0e0");
+    private static final Color       FILL_COLOR        = Color.web("#41a9c9", 0.6);
+    private static final Color       LINE_COLOR        = Color.web("#4258c9");
+    private static final double[]    FREQUENCY_STEPS   = {1, 2, 5};
+
+    private Label title;
+    private Pane plot;
+    private Canvas canvas;
+    private int width, height;
+    private double scale;
+
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private final DecimalStringCache tickLabels = new DecimalStringCache(0, null, " Hz", 64);
+    private final CharFormatter peakText = new CharFormatter();
+
+    public SpectrumChartSkin(final SpectrumChart chart) {
+        super(chart);
+        title = new Label();
+        title.getStyleClass().setAll("chart-title");
+        title.textProperty().bind(chart.titleProperty());
+        title.managedProperty().bind(title.textProperty().isNotEmpty());
+        title.visibleProperty().bind(title.managedProperty());
+
+        canvas = new Canvas();
+        plot = new Pane(canvas);
+        plot.getStyleClass().setAll("chart-plot-background");
+        getChildren().setAll(title, plot);
+    }
+
+    @Override
+    protected void layoutChildren(double x, double y, double w, double h) {
+        double titleHeight = title.isManaged() ? title.prefHeight(w) : 0;
+        title.resizeRelocate(x, y, w, titleHeight);
+        plot.resizeRelocate(x, y + titleHeight, w, Math.max(0, h - titleHeight));
+        if ((int) w != width || (int) (h - titleHeight) != height) {
+            width = (int) w;
+            height = (int) Math.max(0, h - titleHeight);
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            xs = new double[width + 2];
+            ys = new double[width + 2];
+            draw();
+        }
+    }
+
+    /**
+     * Draws the spectrum of the chart
+     */
+    void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, width, height);
+        double plotHeight = height - AXIS_HEIGHT;
+        if (width <= 0 || plotHeight <= 0) {
+            return;
+        }
+        SpectrumChart chart = getSkinnable();
+        int bins = chart.getBins();
+        double nyquist = chart.getSampleRate() / 2;
+        drawAxis(g, plotHeight, nyquist);
+        if (bins < 2 || nyquist <= 0) {
+            return;
+        }
+
+        // one column per pixel, with the largest magnitude of its bins
+        int peakBin = 1;
+        double peak = 0;
+        int points = 0;
+        int bin = 1;
+        for (int px = 0; px < width && bin < bins; px++) {
+            int last = Math.max(bin, (int) ((long) (px + 1) * (bins - 1) / width));
+            double max = 0;
+            for (; bin <= last && bin < bins; bin++) {
+                double m = chart.getMagnitude(bin);
+                if (m > max) {
+                    max = m;
+                }
+                if (m > peak) {
+                    peak = m;
+                    peakBin = bin;
+                }
+            }
+            xs[points] = (double) (last) / (bins - 1) * width;
+            ys[points] = max;
+            points++;
+        }
+        scale = Math.max(scale * SCALE_DECAY, peak);
+        if (scale <= 0) {
+            return;
+        }
+        for (int i = 0; i < points; i++) {
+            ys[i] = plotHeight - ys[i] / scale * (plotHeight - 5);
+        }
+        xs[points] = xs[points - 1];
+        ys[points] = plotHeight;
+        xs[points + 1] = 0;
+        ys[points + 1] = plotHeight;
+        g.setFill(FILL_COLOR);
+        g.fillPolygon(xs, ys, points + 2);
+        g.setStroke(LINE_COLOR);
+        g.setLineWidth(1);
+        g.strokePolyline(xs, ys, points);
+
+        double peakFrequency = peakBin * nyquist / (bins - 1);
+        g.setFill(AXIS_COLOR);
+        g.setTextAlign(TextAlignment.RIGHT);
+        g.setTextBaseline(VPos.TOP);
+        g.fillText(peakText.clear().append("Peak: ").append(peakFrequency, 1).append(" Hz").toString(),
+                width - 5, 5);
+    }
+
+    private void drawAxis(GraphicsContext g, double plotHeight, double nyquist) {
+        g.setStroke(AXIS_COLOR);
+        g.setLineWidth(1);
+        g.strokeLine(0, plotHeight + 0.5, width, plotHeight + 0.5);
+        if (nyquist <= 0) {
+            return;
+        }
+        double step = tickStep(nyquist * MIN_TICK_SPACING / width);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.TOP);
+        for (double f = 0; f <= nyquist; f += step) {
+            double x = Math.floor(f / nyquist * width) + 0.5;
+            g.setStroke(GRID_COLOR);
+            g.strokeLine(x, 0, x, plotHeight);
+            g.setStroke(AXIS_COLOR);
+            g.strokeLine(x, plotHeight, x, plotHeight + TICK_LENGTH);
+            g.setFill(AXIS_COLOR);
+            g.fillText(tickLabels.get(f), Math.min(Math.max(x, 20), width - 25), plotHeight + TICK_LENGTH);
+        }
+    }
+
+    /**
+     * @return the smallest step of 1, 2 or 5 times a power of ten that is at
+     * least the given one
+     */
+    private static double tickStep(double min) {
+        double power = Math.pow(10, Math.floor(Math.log10(Math.max(min, 1e-9))));
+        for (double s : FREQUENCY_STEPS) {
+            if (s * power >= min) {
+                return s * power;
+            }
+        }
+        return 10 * power;
+    }
+}
@@ -0,0 +1,266 @@
+package com.gluonhq.gaf.down.chart;
+
+import com.gluonhq.gaf.down.data.SampleBuffer;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.Control;
+import javafx.scene.control.Skin;
+import javafx.scene.paint.Color;
+import javafx.util.StringConverter;
+
+/**
+ * Line chart for streams of sensor samples, that plots the channels of a
+ * {@link SampleBuffer} over a sliding time window.
+ * <p>
+ * Unlike {@link javafx.scene.chart.LineChart}, there is no node per data point:
+ * the series are drawn on a canvas that scrolls, so each {@link #refresh()} only
+ * draws the columns for the samples added since the previous one.
+ */
+public class StreamingChart extends Control {
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Creates a new StreamingChart with a time window of 10 seconds, and a
+     * value range from -20 to 20.
+     */
+    public StreamingChart() {
+        getStyleClass().setAll(DEFAULT_STYLE_CLASS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return
+     */
+    @Override public String getUserAgentStylesheet() {
+        return StreamingChart.class.getResource("streamingchart.css").toExternalForm();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return
+     */
+    @Override protected Skin<?> createDefaultSkin() {
+        return new StreamingChartSkin(this);
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Draws the samples added to the {@link #bufferProperty() buffer} since
+     * the last call. It has to be called from the JavaFX Application Thread.
+     */
+    public void refresh() {
+        if (getSkin() instanceof StreamingChartSkin) {
+            ((StreamingChartSkin) getSkin()).refresh();
+        }
+    }
+
+    /**
+     * Clears the plot and draws again all the samples within the time window.
+     */
+    public void reset() {
+        if (getSkin() instanceof StreamingChartSkin) {
+            ((StreamingChartSkin) getSkin()).reset();
+        }
+    }
+
+    /**
+     * @return the average time spent in {@link #refresh()} over the last
+     * frames, in nanoseconds
+     */
+    public long getAverageFrameTime() {
+        return getSkin() instanceof StreamingChartSkin ?
+                ((StreamingChartSkin) getSkin()).getAverageFrameTime() : 0;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Properties                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    // --- title
+    private final StringProperty title = new SimpleStringProperty(this, "title");
+    public final StringProperty titleProperty() {
+        return title;
+    }
+    public final String getTitle() {
+        return title.get();
+    }
+    public final void setTitle(String value) {
+        title.set(value);
+    }
+
+    // --- buffer
+    /**
+     * The buffer with the samples to plot. Each channel is drawn as a series.
+     */
+    private final ObjectProperty<SampleBuffer> buffer = new SimpleObjectProperty<>(this, "buffer");
+    public final ObjectProperty<SampleBuffer> bufferProperty() {
+        return buffer;
+    }
+    public final SampleBuffer getBuffer() {
+        return buffer.get();
+    }
+    public final void setBuffer(SampleBuffer value) {
+        buffer.set(value);
+    }
+
+    // --- time window
+    /**
+     * The span of the time axis, in milliseconds. By default 10 seconds.
+     */
+    private final DoubleProperty timeWindow = new SimpleDoubleProperty(this, "timeWindow", 10000);
+    public final DoubleProperty timeWindowProperty() {
+        return timeWindow;
+    }
+    public final double getTimeWindow() {
+        return timeWindow.get();
+    }
+    public final void setTimeWindow(double value) {
+        timeWindow.set(value);
+    }
+
+    // --- lower bound
+    private final DoubleProperty lowerBound = new SimpleDoubleProperty(this, "lowerBound", -20);
+    public final DoubleProperty lowerBoundProperty() {
+        return lowerBound;
+    }
+    public final double getLowerBound() {
+        return lowerBound.get();
+    }
+    public final void setLowerBound(double value) {
+        lowerBound.set(value);
+    }
+
+    // --- upper bound
+    private final DoubleProperty upperBound = new SimpleDoubleProperty(this, "upperBound", 20);
+    public final DoubleProperty upperBoundProperty() {
+        return upperBound;
+    }
+    public final double getUpperBound() {
+        return upperBound.get();
+    }
+    public final void setUpperBound(double value) {
+        upperBound.set(value);
+    }
+
+    // --- auto ranging
+    /**
+     * When true, the value range grows to include samples out of the
+     * current bounds. Each time this happens the plot is drawn again.
+     */
+    private final BooleanProperty autoRanging = new SimpleBooleanProperty(this, "autoRanging", true);
+    public final BooleanProperty autoRangingProperty() {
+        return autoRanging;
+    }
+    public final boolean isAutoRanging() {
+        return autoRanging.get();
+    }
+    public final void setAutoRanging(boolean value) {
+        autoRanging.set(value);
+    }
+
+    // --- tick label formatter
+    /**
+     * Formats the labels of the time axis, that are epoch milliseconds.
+     */
+    private final ObjectProperty<StringConverter<Number>> tickLabelFormatter =
+            new SimpleObjectProperty<>(this, "tickLabelFormatter");
+    public final ObjectProperty<StringConverter<Number>> tickLabelFormatterProperty() {
+        return tickLabelFormatter;
+    }
+    public final StringConverter<Number> getTickLabelFormatter() {
+        return tickLabelFormatter.get();
+    }
+    public final void setTickLabelFormatter(StringConverter<Number> value) {
+        tickLabelFormatter.set(value);
+    }
+
+    // --- series names
+    private final ObservableList<String> seriesNames = FXCollections.observableArrayList();
+    /**
+     * @return the names of the series, shown in the legend, one per channel
+     */
+    public final ObservableList<String> getSeriesNames() {
+        return seriesNames;
+    }
+
+    // --- markers
+    private final ObservableList<Marker> markers = FXCollections.observableArrayList();
+    /**
+     * @return the markers drawn as vertical lines over the series, in time
+     * order. Markers older than the time window can be removed
+     */
+    public final ObservableList<Marker> getMarkers() {
+        return markers;
+    }
+
+    // --- series colors
+    private final ObservableList<Color> seriesColors = FXCollections.observableArrayList(
+            Color.web("#f3622d"), Color.web("#fba71b"), Color.web("#57b757"),
+            Color.web("#41a9c9"), Color.web("#4258c9"), Color.web("#9a42c8"));
+    /**
+     * @return the colors of the series, one per channel
+     */
+    public final ObservableList<Color> getSeriesColors() {
+        return seriesColors;
+    }
+
+    /**
+     * An annotation of a point in time
+     */
+    public static final class Marker {
+
+        private final long time;
+        private final String text;
+        private final Color color;
+
+        /**
+         * @param time the time of the marker, in epoch milliseconds
+         * @param text the label of the marker
+         * @param color the color of the line and the label
+         */
+        public Marker(long time, String text, Color color) {
+            this.time = time;
+            this.text = text;
+            this.color = color;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Color getColor() {
+            return color;
+        }
+    }
+
+     /**************************************************************************
+    *                                                                         *
+    * Stylesheet Handling                                                     *
+    *                                                                         *
+    **************************************************************************/
+    private static final String DEFAULT_STYLE_CLASS = "streaming-chart";
+}
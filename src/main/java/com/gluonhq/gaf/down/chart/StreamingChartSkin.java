@@ -0,0 +1,526 @@
+package com.gluonhq.gaf.down.chart;
+
+import com.gluonhq.format.DecimalStringCache;
+import com.gluonhq.gaf.down.data.SampleBuffer;
+import java.util.Arrays;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.SkinBase;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.TextAlignment;
+import javafx.util.StringConverter;
+
+/**
+ * Skin for {@link StreamingChart}.
+ * <p>
+ * The plot area is a tape of two canvases, each as wide as the plot. Time is
+ * mapped to an ever growing column index, and the column <code>c</code> is
+ * drawn in the canvas <code>c / width</code>, which alternates between the
+ * two canvases. Scrolling is done by translating both canvases, so the pixels
+ * already drawn are never drawn again: a refresh only strokes the columns of
+ * the new samples. When many samples fall in the same column, only their
+ * minimum and maximum are drawn. Markers are drawn on the tapes too, once
+ * the samples reach their time.
+ */
+public class StreamingChartSkin extends SkinBase<StreamingChart> {
+    private static final double      Y_AXIS_WIDTH      = 50;
+    private static final double      TIME_AXIS_HEIGHT  = 24;
+    private static final double      TICK_LENGTH       = 5;
+    private static final double      MIN_TICK_SPACING  = 110;
+    private static final Color       AXIS_COLOR        = Color.GRAY;
+    private static final Color       GRID_COLOR        = Color.web("#e0e0e0");
+    private static final long[]      TIME_TICK_UNITS   = {10, 20, 50, 100, 200, 500,
+        1000, 2000, 5000, 10000, 15000, 30000, 60000, 120000, 300000, 600000};
+    private static final int         FRAME_SAMPLES     = 60;
+    private static final int         TICK_LABEL_CACHE  = 16;
+    private static final double      MARKER_LABEL_WIDTH = 60;
+
+    private Label title;
+    private HBox legend;
+    private Canvas yAxis;
+    private Canvas timeAxis;
+    private Pane plot;
+    private Rectangle plotClip;
+    private Canvas grid;
+    private final Canvas[] tapes = new Canvas[2];
+    private final long[] tapePages = new long[2];
+
+    private int width, height;
+    private double pxPerMs;
+    private long origin;
+    private long headColumn;
+    private long lastCount;
+    private boolean started;
+    private double lower, upper;
+    // set while auto ranging changes both bounds, to draw again only once
+    private boolean settingBounds;
+    private long lastAxisColumn = Long.MIN_VALUE;
+    // markers up to this time are drawn
+    private long markedTime = Long.MIN_VALUE;
+
+    // per channel state of the column being drawn
+    private long[] column = new long[0];
+    private double[] columnMin = new double[0];
+    private double[] columnMax = new double[0];
+    private double[] lastY = new double[0];
+
+    // labels of the time ticks, that are drawn again on every scroll
+    private final long[] tickTimes = new long[TICK_LABEL_CACHE];
+    private final String[] tickLabels = new String[TICK_LABEL_CACHE];
+
+    // labels of the value ticks, whole or with a decimal
+    private final DecimalStringCache valueLabels = new DecimalStringCache(0, null, null, 32);
+    private final DecimalStringCache fractionLabels = new DecimalStringCache(1, null, null, 32);
+
+    private final long[] frameTimes = new long[FRAME_SAMPLES];
+    private int frameIndex;
+    private int frameCount;
+
+    public StreamingChartSkin(final StreamingChart chart) {
+        super(chart);
+        initialize();
+        chart.bufferProperty().addListener(observable -> reset());
+        chart.timeWindowProperty().addListener(observable -> reset());
+        chart.lowerBoundProperty().addListener(observable -> boundsChanged());
+        chart.upperBoundProperty().addListener(observable -> boundsChanged());
+        chart.tickLabelFormatterProperty().addListener(observable -> {
+            Arrays.fill(tickLabels, null);
+            lastAxisColumn = Long.MIN_VALUE;
+        });
+        chart.getSeriesColors().addListener((ListChangeListener<Color>) c -> {
+            updateLegend();
+            reset();
+        });
+        chart.getSeriesNames().addListener((ListChangeListener<String>) c -> updateLegend());
+        chart.getMarkers().addListener((ListChangeListener<StreamingChart.Marker>) c -> {
+            while (c.next()) {
+                // markers that arrive after their samples are drawn right away
+                for (StreamingChart.Marker marker : c.getAddedSubList()) {
+                    if (marker.getTime() <= markedTime) {
+                        drawMarker(marker);
+                    }
+                }
+            }
+        });
+    }
+
+    private void initialize() {
+        title = new Label();
+        title.getStyleClass().setAll("chart-title");
+        title.textProperty().bind(getSkinnable().titleProperty());
+        title.managedProperty().bind(title.textProperty().isNotEmpty());
+        title.visibleProperty().bind(title.managedProperty());
+
+        legend = new HBox();
+        legend.getStyleClass().setAll("chart-legend");
+
+        yAxis = new Canvas();
+        timeAxis = new Canvas();
+        grid = new Canvas();
+        tapes[0] = new Canvas();
+        tapes[1] = new Canvas();
+
+        plot = new Pane(grid, tapes[0], tapes[1]);
+        plot.getStyleClass().setAll("chart-plot-background");
+        plotClip = new Rectangle();
+        plot.setClip(plotClip);
+
+        getChildren().setAll(title, yAxis, plot, timeAxis, legend);
+        updateLegend();
+    }
+
+    @Override
+    protected void layoutChildren(double x, double y, double w, double h) {
+        double titleHeight = title.isManaged() ? title.prefHeight(w) : 0;
+        double legendHeight = legend.prefHeight(w);
+        double plotWidth = Math.max(0, w - Y_AXIS_WIDTH);
+        double plotHeight = Math.max(0, h - titleHeight - legendHeight - TIME_AXIS_HEIGHT);
+
+        title.resizeRelocate(x, y, w, titleHeight);
+        yAxis.relocate(x, y + titleHeight);
+        plot.resizeRelocate(x + Y_AXIS_WIDTH, y + titleHeight, plotWidth, plotHeight);
+        timeAxis.relocate(x + Y_AXIS_WIDTH, y + titleHeight + plotHeight);
+        legend.resizeRelocate(x, y + titleHeight + plotHeight + TIME_AXIS_HEIGHT, w, legendHeight);
+
+        if ((int) plotWidth != width || (int) plotHeight != height) {
+            width = (int) plotWidth;
+            height = (int) plotHeight;
+            plotClip.setWidth(width);
+            plotClip.setHeight(height);
+            yAxis.setWidth(Y_AXIS_WIDTH);
+            yAxis.setHeight(height);
+            timeAxis.setWidth(width);
+            timeAxis.setHeight(TIME_AXIS_HEIGHT);
+            grid.setWidth(width);
+            grid.setHeight(height);
+            for (Canvas tape : tapes) {
+                tape.setWidth(width);
+                tape.setHeight(height);
+            }
+            reset();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height, double topInset, double rightInset, double bottomInset, double leftInset) {
+        return 400 + leftInset + rightInset;
+    }
+
+    @Override
+    protected double computePrefHeight(double width, double topInset, double rightInset, double bottomInset, double leftInset) {
+        return 300 + topInset + bottomInset;
+    }
+
+    long getAverageFrameTime() {
+        if (frameCount == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < frameCount; i++) {
+            total += frameTimes[i];
+        }
+        return total / frameCount;
+    }
+
+    private void boundsChanged() {
+        if (! settingBounds) {
+            reset();
+        }
+    }
+
+    /**
+     * Clears the plot, and draws again the samples that fall within the
+     * time window
+     */
+    void reset() {
+        StreamingChart chart = getSkinnable();
+        lower = chart.getLowerBound();
+        upper = chart.getUpperBound();
+        pxPerMs = width / Math.max(1, chart.getTimeWindow());
+        started = false;
+        headColumn = 0;
+        lastCount = 0;
+        lastAxisColumn = Long.MIN_VALUE;
+        markedTime = Long.MIN_VALUE;
+        for (int i = 0; i < tapes.length; i++) {
+            tapes[i].getGraphicsContext2D().clearRect(0, 0, width, height);
+            tapePages[i] = Long.MIN_VALUE;
+        }
+        drawGrid();
+
+        SampleBuffer buffer = chart.getBuffer();
+        if (buffer == null || width <= 0 || height <= 0) {
+            return;
+        }
+        int channels = buffer.getChannels();
+        if (column.length != channels) {
+            column = new long[channels];
+            columnMin = new double[channels];
+            columnMax = new double[channels];
+            lastY = new double[channels];
+        }
+        if (buffer.isEmpty()) {
+            lastCount = buffer.getCount();
+            drawTimeAxis();
+            return;
+        }
+
+        // skip the samples older than the time window
+        long first = buffer.getCount() - buffer.size();
+        long from = buffer.getLastTimestamp() - (long) chart.getTimeWindow();
+        int index = buffer.size() - 1;
+        while (index > 0 && buffer.getTimestamp(index - 1) >= from) {
+            index--;
+        }
+        lastCount = first + index;
+        refresh();
+    }
+
+    /**
+     * Draws the samples added to the buffer since the last refresh
+     */
+    void refresh() {
+        SampleBuffer buffer = getSkinnable().getBuffer();
+        if (buffer == null || width <= 0 || height <= 0) {
+            return;
+        }
+        long count = buffer.getCount();
+        if (count < lastCount) {
+            // the buffer was cleared
+            reset();
+            return;
+        }
+        if (count == lastCount) {
+            return;
+        }
+        long start = System.nanoTime();
+        long first = count - buffer.size();
+        long from = Math.max(lastCount, first);
+
+        if (getSkinnable().isAutoRanging() && growBounds(buffer, (int) (from - first))) {
+            // everything was drawn again with the new bounds
+            return;
+        }
+
+        for (long s = from; s < count; s++) {
+            int index = (int) (s - first);
+            long time = buffer.getTimestamp(index);
+            if (! started) {
+                origin = time;
+                started = true;
+                for (int c = 0; c < column.length; c++) {
+                    column[c] = 0;
+                    lastY[c] = columnMin[c] = columnMax[c] = toY(buffer.getValue(c, index));
+                }
+                continue;
+            }
+            long col = Math.max(headColumn, (long) Math.floor((time - origin) * pxPerMs));
+            headColumn = col;
+            for (int c = 0; c < column.length; c++) {
+                double y = toY(buffer.getValue(c, index));
+                if (col == column[c]) {
+                    columnMin[c] = Math.min(columnMin[c], y);
+                    columnMax[c] = Math.max(columnMax[c], y);
+                } else {
+                    strokeColumn(c);
+                    strokeSegment(c, column[c], lastY[c], col, y);
+                    column[c] = col;
+                    columnMin[c] = columnMax[c] = y;
+                }
+                lastY[c] = y;
+            }
+        }
+        for (int c = 0; c < column.length; c++) {
+            strokeColumn(c);
+        }
+        lastCount = count;
+        drawMarkers(buffer.getLastTimestamp());
+
+        // scroll: the head column is the last one of the plot
+        for (int i = 0; i < tapes.length; i++) {
+            tapes[i].setTranslateX(tapePages[i] == Long.MIN_VALUE ? width :
+                    tapePages[i] * width - headColumn + width - 1);
+        }
+        drawTimeAxis();
+
+        frameTimes[frameIndex] = System.nanoTime() - start;
+        frameIndex = (frameIndex + 1) % FRAME_SAMPLES;
+        frameCount = Math.min(frameCount + 1, FRAME_SAMPLES);
+    }
+
+    private boolean growBounds(SampleBuffer buffer, int fromIndex) {
+        double min = lower, max = upper;
+        for (int i = fromIndex; i < buffer.size(); i++) {
+            for (int c = 0; c < buffer.getChannels(); c++) {
+                double v = buffer.getValue(c, i);
+                if (v < min) {
+                    min = v;
+                } else if (v > max) {
+                    max = v;
+                }
+            }
+        }
+        if (min >= lower && max <= upper) {
+            return false;
+        }
+        double margin = 0.1 * (max - min);
+        StreamingChart chart = getSkinnable();
+        settingBounds = true;
+        try {
+            if (max > upper) {
+                chart.setUpperBound(Math.ceil(max + margin));
+            }
+            if (min < lower) {
+                chart.setLowerBound(Math.floor(min - margin));
+            }
+        } finally {
+            settingBounds = false;
+        }
+        reset();
+        return true;
+    }
+
+    private double toY(double value) {
+        return height * (upper - value) / (upper - lower);
+    }
+
+    private void strokeColumn(int c) {
+        if (columnMax[c] - columnMin[c] >= 1) {
+            GraphicsContext gc = page(Math.floorDiv(column[c], width), c);
+            if (gc != null) {
+                double x = Math.floorMod(column[c], width) + 0.5;
+                gc.strokeLine(x, columnMin[c], x, columnMax[c]);
+            }
+        }
+    }
+
+    private void strokeSegment(int c, long col0, double y0, long col1, double y1) {
+        if (col1 - col0 > width) {
+            return;
+        }
+        long page0 = Math.floorDiv(col0, width);
+        long page1 = Math.floorDiv(col1, width);
+        for (long p = page0; p <= page1; p++) {
+            GraphicsContext gc = page(p, c);
+            if (gc != null) {
+                double offset = p * width - 0.5;
+                gc.strokeLine(col0 - offset, y0, col1 - offset, y1);
+            }
+        }
+    }
+
+    /**
+     * Returns the graphics context of the canvas that holds the given page,
+     * clearing it if it held an older one, with the stroke of the channel.
+     */
+    private GraphicsContext page(long page, int c) {
+        int slot = (int) (page & 1);
+        GraphicsContext gc = tapes[slot].getGraphicsContext2D();
+        if (tapePages[slot] != page) {
+            if (tapePages[slot] > page) {
+                return null;
+            }
+            gc.clearRect(0, 0, width, height);
+            tapePages[slot] = page;
+        }
+        gc.setLineWidth(1);
+        gc.setStroke(getSkinnable().getSeriesColors().get(c % getSkinnable().getSeriesColors().size()));
+        return gc;
+    }
+
+    /**
+     * Draws the markers after the last drawn one, up to the given time
+     */
+    private void drawMarkers(long time) {
+        if (! started) {
+            return;
+        }
+        for (StreamingChart.Marker marker : getSkinnable().getMarkers()) {
+            if (marker.getTime() > markedTime && marker.getTime() <= time) {
+                drawMarker(marker);
+            }
+        }
+        markedTime = time;
+    }
+
+    private void drawMarker(StreamingChart.Marker marker) {
+        if (! started || marker.getTime() < origin) {
+            return;
+        }
+        long col = (long) Math.floor((marker.getTime() - origin) * pxPerMs);
+        if (col <= headColumn - width) {
+            return;
+        }
+        GraphicsContext gc = page(Math.floorDiv(col, width), 0);
+        if (gc == null) {
+            return;
+        }
+        double x = Math.floorMod(col, width) + 0.5;
+        gc.setStroke(marker.getColor());
+        gc.setFill(marker.getColor());
+        gc.setLineDashes(3, 3);
+        gc.strokeLine(x, 0, x, height);
+        gc.setLineDashes(null);
+        // the label stays within the page
+        boolean left = x > width - MARKER_LABEL_WIDTH;
+        gc.setTextAlign(left ? TextAlignment.RIGHT : TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        gc.fillText(marker.getText(), left ? x - 3 : x + 3, 2);
+    }
+
+    private void drawGrid() {
+        GraphicsContext gc = grid.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        GraphicsContext axis = yAxis.getGraphicsContext2D();
+        axis.clearRect(0, 0, Y_AXIS_WIDTH, height);
+        if (height <= 0 || upper <= lower) {
+            return;
+        }
+        double unit = niceUnit((upper - lower) / Math.max(1, height / 50));
+        gc.setStroke(GRID_COLOR);
+        gc.setLineWidth(1);
+        axis.setStroke(AXIS_COLOR);
+        axis.setFill(AXIS_COLOR);
+        axis.setTextAlign(TextAlignment.RIGHT);
+        axis.setTextBaseline(VPos.CENTER);
+        axis.strokeLine(Y_AXIS_WIDTH - 0.5, 0, Y_AXIS_WIDTH - 0.5, height);
+        for (double v = Math.ceil(lower / unit) * unit; v <= upper; v += unit) {
+            double y = Math.floor(toY(v)) + 0.5;
+            gc.strokeLine(0, y, width, y);
+            axis.strokeLine(Y_AXIS_WIDTH - TICK_LENGTH, y, Y_AXIS_WIDTH, y);
+            axis.fillText(formatValue(v, unit), Y_AXIS_WIDTH - TICK_LENGTH - 2, y);
+        }
+    }
+
+    private void drawTimeAxis() {
+        if (headColumn == lastAxisColumn) {
+            return;
+        }
+        lastAxisColumn = headColumn;
+        GraphicsContext gc = timeAxis.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, TIME_AXIS_HEIGHT);
+        gc.setStroke(AXIS_COLOR);
+        gc.setFill(AXIS_COLOR);
+        gc.setLineWidth(1);
+        gc.strokeLine(0, 0.5, width, 0.5);
+        if (! started || pxPerMs <= 0) {
+            return;
+        }
+        long unit = TIME_TICK_UNITS[TIME_TICK_UNITS.length - 1];
+        for (long u : TIME_TICK_UNITS) {
+            if (u * pxPerMs >= MIN_TICK_SPACING) {
+                unit = u;
+                break;
+            }
+        }
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.TOP);
+        long headTime = origin + (long) ((headColumn + 1) / pxPerMs);
+        long firstTime = headTime - (long) (width / pxPerMs);
+        for (long t = (firstTime / unit + 1) * unit; t <= headTime; t += unit) {
+            double x = Math.floor(width - 1 - (headColumn - (t - origin) * pxPerMs)) + 0.5;
+            gc.strokeLine(x, 0, x, TICK_LENGTH);
+            gc.fillText(tickLabel(t, unit), x, TICK_LENGTH + 1);
+        }
+    }
+
+    private String tickLabel(long time, long unit) {
+        int slot = (int) Math.floorMod(time / unit, TICK_LABEL_CACHE);
+        if (tickLabels[slot] == null || tickTimes[slot] != time) {
+            StringConverter<Number> formatter = getSkinnable().getTickLabelFormatter();
+            tickTimes[slot] = time;
+            tickLabels[slot] = formatter != null ? formatter.toString(time) : Long.toString(time);
+        }
+        return tickLabels[slot];
+    }
+
+    private void updateLegend() {
+        legend.getChildren().clear();
+        StreamingChart chart = getSkinnable();
+        for (int i = 0; i < chart.getSeriesNames().size(); i++) {
+            Label item = new Label(chart.getSeriesNames().get(i));
+            item.getStyleClass().setAll("chart-legend-item");
+            if (! chart.getSeriesColors().isEmpty()) {
+                item.setGraphic(new Rectangle(10, 10, chart.getSeriesColors().get(i % chart.getSeriesColors().size())));
+            }
+            legend.getChildren().add(item);
+        }
+    }
+
+    private static double niceUnit(double rough) {
+        double exponent = Math.pow(10, Math.floor(Math.log10(rough)));
+        double fraction = rough / exponent;
+        double nice = fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10;
+        return nice * exponent;
+    }
+
+    private String formatValue(double value, double unit) {
+        return (unit >= 1 ? valueLabels : fractionLabels).get(value);
+    }
+}
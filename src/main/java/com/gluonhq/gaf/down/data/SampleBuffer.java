@@ -0,0 +1,154 @@
+package com.gluonhq.gaf.down.data;
+
+/**
+ * Fixed-capacity ring buffer of timestamped samples, stored as a struct of
+ * primitive arrays: one timestamp array shared by all the channels, and one
+ * value array per channel.
+ * <p>
+ * Adding a sample doesn't allocate: once the buffer is full, the oldest sample
+ * is overwritten. Samples are addressed by a logical index, where 0 is the
+ * oldest sample still held and {@code size() - 1} the most recent one.
+ * <p>
+ * The buffer is meant to be written and read from the JavaFX Application Thread.
+ */
+public class SampleBuffer {
+
+    private final int capacity;
+    private final long[] timestamps;
+    private final double[][] values;
+
+    private int head;
+    private int size;
+    private long count;
+
+    /**
+     * Creates a new buffer
+     * @param channels the number of values per sample, i.e. 3 for X/Y/Z
+     * @param capacity the maximum number of samples kept
+     */
+    public SampleBuffer(int channels, int capacity) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("Channels must be greater than 0");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.values = new double[channels][capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getChannels() {
+        return values.length;
+    }
+
+    /**
+     * @return the number of samples currently held
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the total number of samples added since the buffer was created
+     * or cleared, including those already overwritten
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Adds a sample of one channel
+     * @param timestamp the sample time, in epoch milliseconds
+     * @param value the value of channel 0
+     */
+    public void add(long timestamp, double value) {
+        values[0][head] = value;
+        commit(timestamp);
+    }
+
+    /**
+     * Adds a sample of three channels
+     * @param timestamp the sample time, in epoch milliseconds
+     * @param x the value of channel 0
+     * @param y the value of channel 1
+     * @param z the value of channel 2
+     */
+    public void add(long timestamp, double x, double y, double z) {
+        values[0][head] = x;
+        values[1][head] = y;
+        values[2][head] = z;
+        commit(timestamp);
+    }
+
+    /**
+     * Adds a sample, copying as many values as channels the buffer has
+     * @param timestamp the sample time, in epoch milliseconds
+     * @param sample the values, one per channel
+     */
+    public void add(long timestamp, double[] sample) {
+        for (int c = 0; c < values.length; c++) {
+            values[c][head] = sample[c];
+        }
+        commit(timestamp);
+    }
+
+    private void commit(long timestamp) {
+        timestamps[head] = timestamp;
+        head = head + 1 == capacity ? 0 : head + 1;
+        if (size < capacity) {
+            size++;
+        }
+        count++;
+    }
+
+    /**
+     * @param index the logical index, from 0 (oldest) to size() - 1 (newest)
+     * @return the timestamp of the sample, in epoch milliseconds
+     */
+    public long getTimestamp(int index) {
+        return timestamps[slot(index)];
+    }
+
+    /**
+     * @param channel the channel
+     * @param index the logical index, from 0 (oldest) to size() - 1 (newest)
+     * @return the value of the sample for the given channel
+     */
+    public double getValue(int channel, int index) {
+        return values[channel][slot(index)];
+    }
+
+    public long getFirstTimestamp() {
+        return getTimestamp(0);
+    }
+
+    public long getLastTimestamp() {
+        return getTimestamp(size - 1);
+    }
+
+    /**
+     * Removes all the samples. The arrays are kept, so no allocation happens.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+        count = 0;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int slot = head - size + index;
+        return slot < 0 ? slot + capacity : slot;
+    }
+}
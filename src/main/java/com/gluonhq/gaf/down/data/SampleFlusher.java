@@ -0,0 +1,82 @@
+package com.gluonhq.gaf.down.data;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Animation timer that, once per pulse, runs a flush action if new samples
+ * were added to a {@link SampleBuffer} since the previous pulse.
+ * <p>
+ * The sensor listeners only have to add samples to the buffer, so the rate at
+ * which samples arrive and the rate at which the UI is updated are independent.
+ * The number of samples folded into each frame is counted.
+ */
+public class SampleFlusher extends AnimationTimer {
+
+    private final SampleBuffer buffer;
+    private final Runnable flush;
+
+    private long flushed;
+    private int lastFolded;
+    private int maxFolded;
+    private long frames;
+    private long folded;
+
+    /**
+     * Creates a new flusher
+     * @param buffer the buffer the samples are added to
+     * @param flush the action that updates the UI with the buffer content
+     */
+    public SampleFlusher(SampleBuffer buffer, Runnable flush) {
+        this.buffer = buffer;
+        this.flush = flush;
+    }
+
+    @Override
+    public void handle(long now) {
+        long count = buffer.getCount();
+        if (count < flushed) {
+            // the buffer was cleared
+            flushed = 0;
+        }
+        if (count == flushed) {
+            return;
+        }
+        lastFolded = (int) Math.min(Integer.MAX_VALUE, count - flushed);
+        maxFolded = Math.max(maxFolded, lastFolded);
+        folded += lastFolded;
+        frames++;
+        flushed = count;
+        flush.run();
+    }
+
+    /**
+     * @return the number of samples folded into the last frame
+     */
+    public int getLastFolded() {
+        return lastFolded;
+    }
+
+    /**
+     * @return the maximum number of samples folded into a single frame
+     */
+    public int getMaxFolded() {
+        return maxFolded;
+    }
+
+    /**
+     * @return the average number of samples folded per frame
+     */
+    public double getAverageFolded() {
+        return frames == 0 ? 0 : (double) folded / frames;
+    }
+
+    /**
+     * Resets the counters
+     */
+    public void resetCounters() {
+        lastFolded = 0;
+        maxFolded = 0;
+        frames = 0;
+        folded = 0;
+    }
+}
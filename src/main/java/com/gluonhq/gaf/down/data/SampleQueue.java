@@ -0,0 +1,138 @@
+package com.gluonhq.gaf.down.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single producer, single consumer queue of samples, stored in
+ * primitive arrays, to hand samples from one thread to another without
+ * locks and without allocating.
+ * <p>
+ * Each sample has a type, a timestamp and a fixed number of values. When the
+ * queue is full, new samples are dropped and counted, so the producer, usually
+ * the JavaFX Application Thread, never waits for the consumer.
+ * <p>
+ * Only one thread may call {@link #offer}, and only one thread may call
+ * {@link #drain}.
+ */
+public final class SampleQueue {
+
+    /**
+     * Receives the samples taken from the queue
+     */
+    public interface Sink {
+
+        /**
+         * @param type the type of the sample
+         * @param timestamp the timestamp of the sample
+         * @param values the array that holds the values. It is reused, so
+         * the values have to be read before returning
+         * @param offset the index of the first value of the sample
+         */
+        void accept(int type, long timestamp, double[] values, int offset);
+    }
+
+    private final int width;
+    private final int mask;
+    private final int[] types;
+    private final long[] timestamps;
+    private final double[] values;
+
+    // index of the next sample to take, written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // index of the next sample to add, written by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // producer side copy of head, refreshed only when the queue seems full
+    private long headCache;
+    private volatile long dropped;
+
+    /**
+     * Creates a new queue
+     * @param width the number of values of each sample
+     * @param capacity the maximum number of samples, rounded up to a power of two
+     */
+    public SampleQueue(int width, int capacity) {
+        if (width < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Width and capacity must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.width = width;
+        this.mask = size - 1;
+        this.types = new int[size];
+        this.timestamps = new long[size];
+        this.values = new double[size * width];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of samples waiting to be taken
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return the number of samples dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Adds a sample with up to three values. Missing values are set to 0.
+     * @return false if the queue was full and the sample was dropped
+     */
+    public boolean offer(int type, long timestamp, double a, double b, double c) {
+        long t = tail.get();
+        if (t - headCache > mask) {
+            headCache = head.get();
+            if (t - headCache > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        types[slot] = type;
+        timestamps[slot] = timestamp;
+        int offset = slot * width;
+        values[offset] = a;
+        if (width > 1) {
+            values[offset + 1] = b;
+        }
+        if (width > 2) {
+            values[offset + 2] = c;
+        }
+        for (int i = 3; i < width; i++) {
+            values[offset + i] = 0;
+        }
+        // publishes the sample to the consumer
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Takes the samples that are waiting, up to a maximum
+     * @param sink receives each sample, in order
+     * @param max the maximum number of samples to take
+     * @return the number of samples taken
+     */
+    public int drain(Sink sink, int max) {
+        long h = head.get();
+        int n = (int) Math.min(max, tail.get() - h);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (h + i) & mask;
+            sink.accept(types[slot], timestamps[slot], values, slot * width);
+        }
+        if (n > 0) {
+            // frees the slots for the producer
+            head.lazySet(h + n);
+        }
+        return n;
+    }
+}
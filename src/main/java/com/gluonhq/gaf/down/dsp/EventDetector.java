@@ -0,0 +1,240 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * Detects threshold crossings, shakes, steps and impacts on a stream of three
+ * axis acceleration samples.
+ * <p>
+ * Gravity is removed with a {@link GravityFilter}, and the detectors work on
+ * the linear acceleration:
+ * <ul>
+ * <li>threshold: its magnitude rises above the threshold;</li>
+ * <li>impact: its magnitude rises above the impact threshold, and the event
+ * is reported at the peak, once it falls back;</li>
+ * <li>step: its component along gravity, smoothed with a {@link LowPassFilter},
+ * rises above the step threshold;</li>
+ * <li>shake: the strongest axis changes its sign, above the shake threshold,
+ * a number of times within a short window.</li>
+ * </ul>
+ * Each detector uses hysteresis, so it is only armed again once its signal
+ * falls below a fraction of its threshold, and a refractory period, so it
+ * doesn't report the same event twice. State is kept in primitive fields, so
+ * {@link #process(long, double, double, double)} doesn't allocate; events are
+ * reported to a {@link Listener} as primitives. Instances are not thread safe.
+ */
+public final class EventDetector {
+
+    /**
+     * Receives the detected events
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param type the type of the event
+         * @param timestamp the time of the event, in milliseconds
+         * @param value the value of the event, that depends on its type
+         */
+        void onEvent(SensorEvent.Type type, long timestamp, double value);
+    }
+
+    /**
+     * The fraction of its threshold a signal has to fall below to arm a
+     * detector again
+     */
+    private static final double HYSTERESIS = 0.6;
+
+    private final GravityFilter gravityFilter = new GravityFilter(3, 0.3, false);
+    private final LowPassFilter stepFilter = new LowPassFilter(1, 3);
+    private final double[] linear = new double[3];
+    private final double[] vertical = new double[1];
+    private Listener listener;
+
+    private double threshold = 5;
+    private long thresholdRefractory = 200;
+    private boolean thresholdAbove;
+    private long lastThreshold = Long.MIN_VALUE / 2;
+
+    private double impactThreshold = 20;
+    private long impactRefractory = 500;
+    private boolean impactAbove;
+    private double impactPeak;
+    private long impactPeakTime;
+    private long lastImpact = Long.MIN_VALUE / 2;
+
+    private double stepThreshold = 1.2;
+    private long stepRefractory = 300;
+    private boolean stepAbove;
+    private long lastStep = Long.MIN_VALUE / 2;
+    private long steps;
+
+    private double shakeThreshold = 10;
+    private int shakeReversals = 4;
+    private long shakeWindow = 1000;
+    private long shakeRefractory = 1000;
+    private final int[] shakeSigns = new int[3];
+    private final long[] reversalTimes = new long[16];
+    private int reversals;
+    private long lastShake = Long.MIN_VALUE / 2;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Processes a sample, and reports the events it completes
+     * @param timestamp the time of the sample, in milliseconds
+     */
+    public void process(long timestamp, double x, double y, double z) {
+        linear[0] = x;
+        linear[1] = y;
+        linear[2] = z;
+        gravityFilter.process(timestamp, linear, 0, 3);
+        double magnitude = Math.sqrt(linear[0] * linear[0] + linear[1] * linear[1] + linear[2] * linear[2]);
+
+        detectThreshold(timestamp, magnitude);
+        detectImpact(timestamp, magnitude);
+
+        double gx = gravityFilter.getGravity(0);
+        double gy = gravityFilter.getGravity(1);
+        double gz = gravityFilter.getGravity(2);
+        double g = Math.sqrt(gx * gx + gy * gy + gz * gz);
+        vertical[0] = g == 0 ? 0 : (linear[0] * gx + linear[1] * gy + linear[2] * gz) / g;
+        stepFilter.process(timestamp, vertical, 0, 1);
+        detectStep(timestamp, vertical[0]);
+
+        detectShake(timestamp);
+    }
+
+    private void detectThreshold(long timestamp, double magnitude) {
+        if (thresholdAbove) {
+            thresholdAbove = magnitude >= threshold * HYSTERESIS;
+        } else if (magnitude >= threshold && timestamp - lastThreshold >= thresholdRefractory) {
+            thresholdAbove = true;
+            lastThreshold = timestamp;
+            fire(SensorEvent.Type.THRESHOLD, timestamp, magnitude);
+        }
+    }
+
+    private void detectImpact(long timestamp, double magnitude) {
+        if (impactAbove) {
+            if (magnitude > impactPeak) {
+                impactPeak = magnitude;
+                impactPeakTime = timestamp;
+            } else if (magnitude < impactThreshold * HYSTERESIS) {
+                impactAbove = false;
+                lastImpact = impactPeakTime;
+                fire(SensorEvent.Type.IMPACT, impactPeakTime, impactPeak);
+            }
+        } else if (magnitude >= impactThreshold && timestamp - lastImpact >= impactRefractory) {
+            impactAbove = true;
+            impactPeak = magnitude;
+            impactPeakTime = timestamp;
+        }
+    }
+
+    private void detectStep(long timestamp, double value) {
+        if (stepAbove) {
+            stepAbove = value >= stepThreshold * HYSTERESIS;
+        } else if (value >= stepThreshold && timestamp - lastStep >= stepRefractory) {
+            stepAbove = true;
+            lastStep = timestamp;
+            fire(SensorEvent.Type.STEP, timestamp, ++steps);
+        }
+    }
+
+    private void detectShake(long timestamp) {
+        int axis = 0;
+        for (int c = 1; c < 3; c++) {
+            if (Math.abs(linear[c]) > Math.abs(linear[axis])) {
+                axis = c;
+            }
+        }
+        double value = linear[axis];
+        if (Math.abs(value) < shakeThreshold) {
+            return;
+        }
+        int sign = value > 0 ? 1 : -1;
+        if (shakeSigns[axis] == -sign) {
+            reversalTimes[reversals++ % reversalTimes.length] = timestamp;
+        }
+        shakeSigns[axis] = sign;
+        if (reversals >= shakeReversals) {
+            long first = reversalTimes[(reversals - shakeReversals) % reversalTimes.length];
+            if (timestamp - first <= shakeWindow && timestamp - lastShake >= shakeRefractory) {
+                lastShake = timestamp;
+                fire(SensorEvent.Type.SHAKE, timestamp, shakeReversals);
+                reversals = 0;
+                shakeSigns[0] = shakeSigns[1] = shakeSigns[2] = 0;
+            }
+        }
+    }
+
+    private void fire(SensorEvent.Type type, long timestamp, double value) {
+        if (listener != null) {
+            listener.onEvent(type, timestamp, value);
+        }
+    }
+
+    /**
+     * Forgets the previous samples and the step count
+     */
+    public void reset() {
+        gravityFilter.reset();
+        stepFilter.reset();
+        thresholdAbove = impactAbove = stepAbove = false;
+        lastThreshold = lastImpact = lastStep = lastShake = Long.MIN_VALUE / 2;
+        steps = 0;
+        reversals = 0;
+        shakeSigns[0] = shakeSigns[1] = shakeSigns[2] = 0;
+    }
+
+    /**
+     * @return the number of steps since the detector was created or reset
+     */
+    public long getStepCount() {
+        return steps;
+    }
+
+    /**
+     * @param threshold the linear acceleration of a threshold event, in m/s&sup2;
+     * @param refractory the minimum time between two of them, in milliseconds
+     */
+    public void setThreshold(double threshold, long refractory) {
+        this.threshold = threshold;
+        this.thresholdRefractory = refractory;
+    }
+
+    /**
+     * @param threshold the minimum peak of an impact, in m/s&sup2;
+     * @param refractory the minimum time between two impacts, in milliseconds
+     */
+    public void setImpact(double threshold, long refractory) {
+        this.impactThreshold = threshold;
+        this.impactRefractory = refractory;
+    }
+
+    /**
+     * @param threshold the vertical acceleration of a step, in m/s&sup2;
+     * @param refractory the minimum time between two steps, in milliseconds
+     */
+    public void setStep(double threshold, long refractory) {
+        this.stepThreshold = threshold;
+        this.stepRefractory = refractory;
+    }
+
+    /**
+     * @param threshold the minimum acceleration of a stroke, in m/s&sup2;
+     * @param reversals the number of changes of direction of a shake, up to 16
+     * @param window the maximum time of those changes, in milliseconds
+     * @param refractory the minimum time between two shakes, in milliseconds
+     */
+    public void setShake(double threshold, int reversals, long window, long refractory) {
+        if (reversals < 1 || reversals > reversalTimes.length) {
+            throw new IllegalArgumentException("Invalid reversals: " + reversals);
+        }
+        this.shakeThreshold = threshold;
+        this.shakeReversals = reversals;
+        this.shakeWindow = window;
+        this.shakeRefractory = refractory;
+    }
+}
@@ -0,0 +1,45 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * Exponential moving average with a fixed weight per sample:
+ * <code>y += alpha * (x - y)</code>.
+ * <p>
+ * Unlike {@link LowPassFilter}, the smoothing depends on the number of
+ * samples, not on the time between them.
+ */
+public class ExponentialSmoothing implements FilterStage {
+
+    private final double alpha;
+    private final double[] y;
+    private boolean started;
+
+    /**
+     * @param channels the maximum number of values per sample
+     * @param alpha the weight of each new sample, in (0, 1]
+     */
+    public ExponentialSmoothing(int channels, double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Invalid alpha: " + alpha);
+        }
+        this.alpha = alpha;
+        this.y = new double[channels];
+    }
+
+    @Override
+    public void process(long timestamp, double[] values, int offset, int channels) {
+        if (! started) {
+            System.arraycopy(values, offset, y, 0, channels);
+            started = true;
+            return;
+        }
+        for (int c = 0; c < channels; c++) {
+            y[c] += alpha * (values[offset + c] - y[c]);
+            values[offset + c] = y[c];
+        }
+    }
+
+    @Override
+    public void reset() {
+        started = false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * A fixed sequence of filter stages, applied in order
+ */
+public final class FilterChain implements FilterStage {
+
+    private final FilterStage[] stages;
+
+    public FilterChain(FilterStage... stages) {
+        this.stages = stages.clone();
+    }
+
+    public int size() {
+        return stages.length;
+    }
+
+    public FilterStage getStage(int index) {
+        return stages[index];
+    }
+
+    @Override
+    public void process(long timestamp, double[] values, int offset, int channels) {
+        for (FilterStage stage : stages) {
+            stage.process(timestamp, values, offset, channels);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (FilterStage stage : stages) {
+            stage.reset();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.gluonhq.gaf.down.dsp;
+
+import com.gluonhq.gaf.down.data.SampleBuffer;
+import com.gluonhq.gaf.down.data.SampleQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a filter on a worker thread, between a sensor listener and a chart.
+ * <p>
+ * The listener offers the raw samples on the JavaFX Application Thread, the
+ * worker filters them, and once per frame the filtered samples are drained
+ * into a {@link SampleBuffer}, also on the JavaFX Application Thread. Samples
+ * cross threads through two {@link SampleQueue}s, so nothing is allocated per
+ * sample. If the worker falls behind, samples are dropped and counted.
+ */
+public final class FilterPipeline {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int channels;
+    private final SampleQueue input;
+    private final SampleQueue output;
+    private final Drain drain;
+
+    private volatile FilterStage filter;
+    private volatile Thread worker;
+    private Thread stopped;
+
+    private volatile long processed;
+    private volatile long busyNanos;
+
+    /**
+     * Creates a new pipeline
+     * @param channels the number of values per sample, up to 3
+     * @param capacity the number of samples each queue can hold
+     * @param filter the filter
+     */
+    public FilterPipeline(int channels, int capacity, FilterStage filter) {
+        if (channels < 1 || channels > 3) {
+            throw new IllegalArgumentException("Invalid number of channels: " + channels);
+        }
+        this.channels = channels;
+        this.input = new SampleQueue(channels, capacity);
+        this.output = new SampleQueue(channels, capacity);
+        this.drain = new Drain();
+        this.filter = filter;
+    }
+
+    public FilterStage getFilter() {
+        return filter;
+    }
+
+    /**
+     * Replaces the filter. The worker resets it before its first sample.
+     * @param filter the new filter
+     */
+    public void setFilter(FilterStage filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Starts the worker thread, without waiting for the previous one to exit:
+     * the new one waits for it before taking any sample
+     */
+    public void start() {
+        if (worker != null) {
+            return;
+        }
+        Thread thread = new Thread(new Work(stopped), "filter-pipeline");
+        stopped = null;
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the worker thread, without waiting for it. Samples still queued
+     * are kept until the next start.
+     */
+    public void stop() {
+        Thread thread = worker;
+        if (thread != null) {
+            worker = null;
+            stopped = thread;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Queues a raw sample. Only one thread may call it.
+     * @return false if the sample was dropped
+     */
+    public boolean offer(long timestamp, double x, double y, double z) {
+        return input.offer(0, timestamp, x, y, z);
+    }
+
+    /**
+     * Adds the filtered samples to a buffer. Only one thread may call it.
+     * @param buffer the buffer, with the same number of channels
+     * @return the number of samples added
+     */
+    public int drainTo(SampleBuffer buffer) {
+        drain.buffer = buffer;
+        int n = output.drain(drain, Integer.MAX_VALUE);
+        drain.buffer = null;
+        return n;
+    }
+
+    /**
+     * @return the number of samples filtered
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return the number of samples dropped because a queue was full
+     */
+    public long getDropped() {
+        return input.getDropped() + output.getDropped();
+    }
+
+    /**
+     * @return the number of samples the worker filters per second of work,
+     * or 0 if nothing was filtered yet
+     */
+    public double getThroughput() {
+        long busy = busyNanos;
+        return busy == 0 ? 0 : processed * 1e9 / busy;
+    }
+
+    private final class Work implements Runnable, SampleQueue.Sink {
+
+        private final double[] values = new double[channels];
+        private final Thread previous;
+        private FilterStage stage;
+
+        Work(Thread previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void run() {
+            if (previous != null) {
+                // the queues have a single consumer: the previous worker exits
+                // right after its current batch
+                try {
+                    previous.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            Thread self = Thread.currentThread();
+            long count = processed;
+            long busy = busyNanos;
+            while (worker == self) {
+                FilterStage f = filter;
+                if (f != stage) {
+                    stage = f;
+                    stage.reset();
+                }
+                long start = System.nanoTime();
+                int n = input.drain(this, BATCH_SIZE);
+                if (n > 0) {
+                    count += n;
+                    busy += System.nanoTime() - start;
+                    processed = count;
+                    busyNanos = busy;
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+
+        @Override
+        public void accept(int type, long timestamp, double[] v, int offset) {
+            System.arraycopy(v, offset, values, 0, channels);
+            stage.process(timestamp, values, 0, channels);
+            output.offer(type, timestamp, values[0],
+                    channels > 1 ? values[1] : 0, channels > 2 ? values[2] : 0);
+        }
+    }
+
+    private final class Drain implements SampleQueue.Sink {
+
+        private final double[] values = new double[channels];
+        private SampleBuffer buffer;
+
+        @Override
+        public void accept(int type, long timestamp, double[] v, int offset) {
+            System.arraycopy(v, offset, values, 0, channels);
+            buffer.add(timestamp, values);
+        }
+    }
+}
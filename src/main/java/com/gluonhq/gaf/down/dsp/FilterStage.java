@@ -0,0 +1,25 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * A stage of a {@link FilterChain}: filters the values of each sample in
+ * place, keeping its state in primitive fields, so filtering doesn't
+ * allocate.
+ * <p>
+ * Stages are used from a single thread at a time.
+ */
+public interface FilterStage {
+
+    /**
+     * Filters one sample
+     * @param timestamp the time of the sample, in milliseconds
+     * @param values the values of the sample, replaced with the filtered ones
+     * @param offset the index of the first value
+     * @param channels the number of values
+     */
+    void process(long timestamp, double[] values, int offset, int channels);
+
+    /**
+     * Forgets the previous samples
+     */
+    void reset();
+}
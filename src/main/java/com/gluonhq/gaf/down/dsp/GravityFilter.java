@@ -0,0 +1,48 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * Separates gravity from the acceleration of the device: gravity is
+ * estimated with a low-pass filter of the acceleration, and either removed,
+ * leaving the linear acceleration, or kept, leaving gravity alone.
+ */
+public class GravityFilter implements FilterStage {
+
+    private final LowPassFilter lowPass;
+    private final double[] gravity;
+    private final boolean keepGravity;
+
+    /**
+     * @param channels the maximum number of values per sample
+     * @param cutoff the cutoff frequency of the gravity estimation, in Hz.
+     * Usually well below 1 Hz
+     * @param keepGravity true to output gravity, false to output the linear
+     * acceleration
+     */
+    public GravityFilter(int channels, double cutoff, boolean keepGravity) {
+        this.lowPass = new LowPassFilter(channels, cutoff);
+        this.gravity = new double[channels];
+        this.keepGravity = keepGravity;
+    }
+
+    @Override
+    public void process(long timestamp, double[] values, int offset, int channels) {
+        System.arraycopy(values, offset, gravity, 0, channels);
+        lowPass.process(timestamp, gravity, 0, channels);
+        for (int c = 0; c < channels; c++) {
+            values[offset + c] = keepGravity ? gravity[c] : values[offset + c] - gravity[c];
+        }
+    }
+
+    /**
+     * @param channel the channel
+     * @return the current estimation of gravity along the given axis
+     */
+    public double getGravity(int channel) {
+        return gravity[channel];
+    }
+
+    @Override
+    public void reset() {
+        lowPass.reset();
+    }
+}
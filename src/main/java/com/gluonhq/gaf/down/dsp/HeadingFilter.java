@@ -0,0 +1,119 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * Smooths a heading, in degrees, as an angle: the unit vector of the heading
+ * goes through a first order low-pass filter, so averaging 359&deg; and
+ * 1&deg; gives 0&deg;, not 180&deg;.
+ * <p>
+ * The output is unwrapped: it moves by the shortest arc from the previous
+ * one, and may go beyond [0, 360), so a rotation bound to it doesn't spin
+ * a whole turn when the heading wraps around north. With
+ * {@link #update(long, double)}, changes smaller than a dead-band are
+ * ignored, so a jittery sensor doesn't update the scene graph when there is
+ * nothing visible to show.
+ */
+public class HeadingFilter implements FilterStage {
+
+    private final double timeConstant;
+    private final double deadBand;
+    private double sin, cos;
+    private double unwrapped;
+    private double published;
+    private long last = Long.MIN_VALUE;
+
+    /**
+     * @param timeConstant the time constant of the smoothing, in seconds, or
+     * 0 to not smooth
+     * @param deadBand the smallest change reported by
+     * {@link #update(long, double)}, in degrees
+     */
+    public HeadingFilter(double timeConstant, double deadBand) {
+        if (timeConstant < 0 || deadBand < 0) {
+            throw new IllegalArgumentException("Invalid heading filter");
+        }
+        this.timeConstant = timeConstant;
+        this.deadBand = deadBand;
+    }
+
+    /**
+     * Filters the heading in the first value of the sample, replaced with the
+     * unwrapped smoothed heading
+     */
+    @Override
+    public void process(long timestamp, double[] values, int offset, int channels) {
+        values[offset] = filter(timestamp, values[offset]);
+    }
+
+    /**
+     * Filters a heading
+     * @param timestamp the time of the heading, in milliseconds
+     * @param heading the heading, in degrees
+     * @return true if the filtered heading moved at least the dead-band since
+     * the last time this returned true
+     */
+    public boolean update(long timestamp, double heading) {
+        boolean first = last == Long.MIN_VALUE;
+        double value = filter(timestamp, heading);
+        if (first || Math.abs(value - published) >= deadBand) {
+            published = value;
+            return true;
+        }
+        return false;
+    }
+
+    private double filter(long timestamp, double heading) {
+        double radians = Math.toRadians(heading);
+        if (last == Long.MIN_VALUE) {
+            sin = Math.sin(radians);
+            cos = Math.cos(radians);
+            unwrapped = normalize(heading);
+        } else {
+            double dt = Math.max(0, timestamp - last) / 1000.0;
+            double a = timeConstant == 0 ? 1 : dt / (timeConstant + dt);
+            sin += a * (Math.sin(radians) - sin);
+            cos += a * (Math.cos(radians) - cos);
+            if (sin != 0 || cos != 0) {
+                double angle = Math.toDegrees(Math.atan2(sin, cos));
+                unwrapped += shortestArc(unwrapped, angle);
+            }
+        }
+        last = timestamp;
+        return unwrapped;
+    }
+
+    /**
+     * @return the last published heading, unwrapped
+     */
+    public double getUnwrappedHeading() {
+        return published;
+    }
+
+    /**
+     * @return the last published heading, in [0, 360)
+     */
+    public double getHeading() {
+        return normalize(published);
+    }
+
+    @Override
+    public void reset() {
+        last = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the angle in [0, 360)
+     */
+    public static double normalize(double degrees) {
+        double angle = degrees % 360;
+        return angle < 0 ? angle + 360 : angle;
+    }
+
+    /**
+     * @return the rotation, in (-180, 180], that takes the first angle to the
+     * second one
+     */
+    public static double shortestArc(double from, double to) {
+        double delta = normalize(to - from);
+        return delta > 180 ? delta - 360 : delta;
+    }
+}
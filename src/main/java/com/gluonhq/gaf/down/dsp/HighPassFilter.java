@@ -0,0 +1,56 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * First order IIR high-pass filter:
+ * <code>y = a * (y + x - x<sub>prev</sub>)</code>, with
+ * <code>a = RC / (RC + dt)</code>.
+ * <p>
+ * The coefficient is computed from the time between samples, so the cutoff
+ * frequency holds when the sensor rate changes.
+ */
+public class HighPassFilter implements FilterStage {
+
+    private final double rc;
+    private final double[] x;
+    private final double[] y;
+    private long last = Long.MIN_VALUE;
+
+    /**
+     * @param channels the maximum number of values per sample
+     * @param cutoff the cutoff frequency, in Hz
+     */
+    public HighPassFilter(int channels, double cutoff) {
+        if (cutoff <= 0) {
+            throw new IllegalArgumentException("Invalid cutoff frequency: " + cutoff);
+        }
+        this.rc = 1 / (2 * Math.PI * cutoff);
+        this.x = new double[channels];
+        this.y = new double[channels];
+    }
+
+    @Override
+    public void process(long timestamp, double[] values, int offset, int channels) {
+        if (last == Long.MIN_VALUE) {
+            for (int c = 0; c < channels; c++) {
+                x[c] = values[offset + c];
+                y[c] = 0;
+                values[offset + c] = 0;
+            }
+        } else {
+            double dt = Math.max(0, timestamp - last) / 1000.0;
+            double a = rc / (rc + dt);
+            for (int c = 0; c < channels; c++) {
+                double v = values[offset + c];
+                y[c] = a * (y[c] + v - x[c]);
+                x[c] = v;
+                values[offset + c] = y[c];
+            }
+        }
+        last = timestamp;
+    }
+
+    @Override
+    public void reset() {
+        last = Long.MIN_VALUE;
+    }
+}
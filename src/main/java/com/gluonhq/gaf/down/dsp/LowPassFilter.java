@@ -0,0 +1,47 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * First order IIR low-pass filter:
+ * <code>y += a * (x - y)</code>, with <code>a = dt / (RC + dt)</code>.
+ * <p>
+ * The coefficient is computed from the time between samples, so the cutoff
+ * frequency holds when the sensor rate changes.
+ */
+public class LowPassFilter implements FilterStage {
+
+    private final double rc;
+    private final double[] y;
+    private long last = Long.MIN_VALUE;
+
+    /**
+     * @param channels the maximum number of values per sample
+     * @param cutoff the cutoff frequency, in Hz
+     */
+    public LowPassFilter(int channels, double cutoff) {
+        if (cutoff <= 0) {
+            throw new IllegalArgumentException("Invalid cutoff frequency: " + cutoff);
+        }
+        this.rc = 1 / (2 * Math.PI * cutoff);
+        this.y = new double[channels];
+    }
+
+    @Override
+    public void process(long timestamp, double[] values, int offset, int channels) {
+        if (last == Long.MIN_VALUE) {
+            System.arraycopy(values, offset, y, 0, channels);
+        } else {
+            double dt = Math.max(0, timestamp - last) / 1000.0;
+            double a = dt / (rc + dt);
+            for (int c = 0; c < channels; c++) {
+                y[c] += a * (values[offset + c] - y[c]);
+                values[offset + c] = y[c];
+            }
+        }
+        last = timestamp;
+    }
+
+    @Override
+    public void reset() {
+        last = Long.MIN_VALUE;
+    }
+}
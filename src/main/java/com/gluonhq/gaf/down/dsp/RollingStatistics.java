@@ -0,0 +1,329 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * Mean, variance, RMS, minimum and maximum of each channel of a stream of
+ * samples, over a sliding time window, updated in constant amortized time
+ * per sample.
+ * <p>
+ * The samples of the window are kept in a ring. Mean and variance use
+ * Welford's accumulators, updated when a sample enters and when it leaves
+ * the window, and recomputed from the ring every <code>capacity</code>
+ * removals so rounding errors don't build up. Minimum and maximum are the
+ * heads of monotonic deques of sample indexes.
+ * <p>
+ * The ring starts at an initial capacity and doubles, up to a maximum, when
+ * more samples than it holds fall in the window, so it fits the actual rate
+ * of the samples. When more samples than the maximum capacity fall in the
+ * window, the oldest ones leave it early, and are counted by
+ * {@link #getTruncated()}. Instances are not thread safe.
+ */
+public final class RollingStatistics {
+
+    private final int channels;
+    private final long window;
+    private final int maxCapacity;
+    private int capacity;
+
+    // ring of the samples in the window, indexed by sequence % capacity
+    private long[] times;
+    private double[] values;
+    private long first;
+    private long next;
+    private long truncated;
+
+    private final double[] mean;
+    private final double[] m2;
+    private int removals;
+
+    // deques of sequences, with increasing values for min, decreasing for max
+    private final long[][] minDeque;
+    private final long[][] maxDeque;
+    private final int[] minHead, minSize;
+    private final int[] maxHead, maxSize;
+
+    /**
+     * Creates a new instance with a fixed capacity
+     * @param channels the number of values per sample
+     * @param window the span of the window, in milliseconds
+     * @param capacity the maximum number of samples in the window
+     */
+    public RollingStatistics(int channels, long window, int capacity) {
+        this(channels, window, capacity, capacity);
+    }
+
+    /**
+     * Creates a new instance
+     * @param channels the number of values per sample
+     * @param window the span of the window, in milliseconds
+     * @param capacity the initial number of samples the window can hold
+     * @param maxCapacity the maximum number of samples in the window
+     */
+    public RollingStatistics(int channels, long window, int capacity, int maxCapacity) {
+        if (channels < 1 || window <= 0 || capacity < 1 || maxCapacity < capacity) {
+            throw new IllegalArgumentException("Invalid statistics");
+        }
+        this.channels = channels;
+        this.window = window;
+        this.capacity = capacity;
+        this.maxCapacity = maxCapacity;
+        this.times = new long[capacity];
+        this.values = new double[capacity * channels];
+        this.mean = new double[channels];
+        this.m2 = new double[channels];
+        this.minDeque = new long[channels][capacity];
+        this.maxDeque = new long[channels][capacity];
+        this.minHead = new int[channels];
+        this.minSize = new int[channels];
+        this.maxHead = new int[channels];
+        this.maxSize = new int[channels];
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return the span of the window, in milliseconds
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the number of samples the window can hold now
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * @return the number of samples that left the window early, because
+     * more than the maximum capacity fell in it
+     */
+    public long getTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the number of samples in the window
+     */
+    public int getCount() {
+        return (int) (next - first);
+    }
+
+    /**
+     * Adds a sample of up to three channels, and removes the samples that
+     * are older than the window
+     */
+    public void add(long timestamp, double x, double y, double z) {
+        int slot = begin(timestamp);
+        values[slot] = x;
+        if (channels > 1) {
+            values[slot + 1] = y;
+        }
+        if (channels > 2) {
+            values[slot + 2] = z;
+        }
+        end();
+    }
+
+    /**
+     * Adds a sample, and removes the samples that are older than the window
+     * @param timestamp the time of the sample, in milliseconds
+     * @param sample the values of the sample, one per channel
+     */
+    public void add(long timestamp, double[] sample) {
+        int slot = begin(timestamp);
+        System.arraycopy(sample, 0, values, slot, channels);
+        end();
+    }
+
+    private int begin(long timestamp) {
+        while (first < next && times[(int) (first % capacity)] <= timestamp - window) {
+            removeFirst();
+        }
+        if (next - first == capacity) {
+            if (capacity < maxCapacity) {
+                grow((int) Math.min(maxCapacity, 2L * capacity));
+            } else {
+                truncated++;
+                removeFirst();
+            }
+        }
+        int index = (int) (next % capacity);
+        times[index] = timestamp;
+        return index * channels;
+    }
+
+    private void end() {
+        long seq = next++;
+        int n = getCount();
+        int slot = (int) (seq % capacity) * channels;
+        for (int c = 0; c < channels; c++) {
+            double v = values[slot + c];
+            double d = v - mean[c];
+            mean[c] += d / n;
+            m2[c] += d * (v - mean[c]);
+
+            long[] deque = minDeque[c];
+            while (minSize[c] > 0 && value(deque[(minHead[c] + minSize[c] - 1) % capacity], c) >= v) {
+                minSize[c]--;
+            }
+            deque[(minHead[c] + minSize[c]++) % capacity] = seq;
+
+            deque = maxDeque[c];
+            while (maxSize[c] > 0 && value(deque[(maxHead[c] + maxSize[c] - 1) % capacity], c) <= v) {
+                maxSize[c]--;
+            }
+            deque[(maxHead[c] + maxSize[c]++) % capacity] = seq;
+        }
+    }
+
+    /**
+     * Moves the samples and the deques to larger arrays
+     */
+    private void grow(int newCapacity) {
+        long[] newTimes = new long[newCapacity];
+        double[] newValues = new double[newCapacity * channels];
+        for (long s = first; s < next; s++) {
+            int from = (int) (s % capacity);
+            int to = (int) (s % newCapacity);
+            newTimes[to] = times[from];
+            System.arraycopy(values, from * channels, newValues, to * channels, channels);
+        }
+        for (int c = 0; c < channels; c++) {
+            minDeque[c] = growDeque(minDeque[c], minHead[c], minSize[c], newCapacity);
+            minHead[c] = 0;
+            maxDeque[c] = growDeque(maxDeque[c], maxHead[c], maxSize[c], newCapacity);
+            maxHead[c] = 0;
+        }
+        times = newTimes;
+        values = newValues;
+        capacity = newCapacity;
+    }
+
+    private long[] growDeque(long[] deque, int head, int size, int newCapacity) {
+        long[] grown = new long[newCapacity];
+        for (int i = 0; i < size; i++) {
+            grown[i] = deque[(head + i) % capacity];
+        }
+        return grown;
+    }
+
+    private void removeFirst() {
+        long seq = first++;
+        int n = getCount();
+        int slot = (int) (seq % capacity) * channels;
+        for (int c = 0; c < channels; c++) {
+            if (n == 0) {
+                mean[c] = 0;
+                m2[c] = 0;
+            } else {
+                double v = values[slot + c];
+                double d = v - mean[c];
+                mean[c] -= d / n;
+                m2[c] = Math.max(0, m2[c] - d * (v - mean[c]));
+            }
+            if (minSize[c] > 0 && minDeque[c][minHead[c]] == seq) {
+                minHead[c] = (minHead[c] + 1) % capacity;
+                minSize[c]--;
+            }
+            if (maxSize[c] > 0 && maxDeque[c][maxHead[c]] == seq) {
+                maxHead[c] = (maxHead[c] + 1) % capacity;
+                maxSize[c]--;
+            }
+        }
+        if (++removals >= capacity) {
+            removals = 0;
+            recompute();
+        }
+    }
+
+    /**
+     * Computes mean and variance again from the samples in the window
+     */
+    private void recompute() {
+        for (int c = 0; c < channels; c++) {
+            double mu = 0;
+            double m = 0;
+            int n = 0;
+            for (long s = first; s < next; s++) {
+                double v = value(s, c);
+                n++;
+                double d = v - mu;
+                mu += d / n;
+                m += d * (v - mu);
+            }
+            mean[c] = mu;
+            m2[c] = m;
+        }
+    }
+
+    private double value(long seq, int channel) {
+        return values[(int) (seq % capacity) * channels + channel];
+    }
+
+    /**
+     * Removes all the samples
+     */
+    public void clear() {
+        first = next = 0;
+        removals = 0;
+        truncated = 0;
+        for (int c = 0; c < channels; c++) {
+            mean[c] = 0;
+            m2[c] = 0;
+            minHead[c] = minSize[c] = 0;
+            maxHead[c] = maxSize[c] = 0;
+        }
+    }
+
+    public double getMean(int channel) {
+        return mean[channel];
+    }
+
+    /**
+     * @return the population variance, or 0 if the window is empty
+     */
+    public double getVariance(int channel) {
+        int n = getCount();
+        return n == 0 ? 0 : m2[channel] / n;
+    }
+
+    public double getStandardDeviation(int channel) {
+        return Math.sqrt(getVariance(channel));
+    }
+
+    /**
+     * @return the root mean square of the values
+     */
+    public double getRms(int channel) {
+        return Math.sqrt(mean[channel] * mean[channel] + getVariance(channel));
+    }
+
+    /**
+     * @return the minimum value, or NaN if the window is empty
+     */
+    public double getMin(int channel) {
+        return minSize[channel] == 0 ? Double.NaN : value(minDeque[channel][minHead[channel]], channel);
+    }
+
+    /**
+     * @return the maximum value, or NaN if the window is empty
+     */
+    public double getMax(int channel) {
+        return maxSize[channel] == 0 ? Double.NaN : value(maxDeque[channel][maxHead[channel]], channel);
+    }
+
+    /**
+     * @return the difference between maximum and minimum, or NaN if the
+     * window is empty
+     */
+    public double getPeakToPeak(int channel) {
+        return getMax(channel) - getMin(channel);
+    }
+}
@@ -0,0 +1,59 @@
+package com.gluonhq.gaf.down.dsp;
+
+/**
+ * A discrete event detected on a stream of samples by an {@link EventDetector}
+ */
+public final class SensorEvent {
+
+    public enum Type {
+        /**
+         * The linear acceleration crossed the threshold. The value is the
+         * linear acceleration, in m/s&sup2;
+         */
+        THRESHOLD,
+        /**
+         * The device was shaken back and forth. The value is the number of
+         * reversals
+         */
+        SHAKE,
+        /**
+         * A step. The value is the number of steps so far
+         */
+        STEP,
+        /**
+         * A short, strong peak of linear acceleration. The value is the peak,
+         * in m/s&sup2;
+         */
+        IMPACT
+    }
+
+    private final Type type;
+    private final long timestamp;
+    private final double value;
+
+    public SensorEvent(Type type, long timestamp, double value) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the time of the event, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorEvent{" + "type=" + type + ", timestamp=" + timestamp + ", value=" + value + '}';
+    }
+}
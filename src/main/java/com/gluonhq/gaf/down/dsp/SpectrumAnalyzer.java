@@ -0,0 +1,231 @@
+package com.gluonhq.gaf.down.dsp;
+
+import com.gluonhq.gaf.down.data.SampleQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sliding window spectrum of a stream of samples, computed on a worker thread.
+ * <p>
+ * Samples are offered on the JavaFX Application Thread and kept by the worker
+ * in a ring of the size of the window. Every <code>hop</code> samples, the
+ * window, without its mean and with a Hann window applied, is transformed with
+ * an {@link FFT}, and its magnitudes are published. The UI copies the latest
+ * spectrum once per frame with {@link #read(double[])}. All the arrays are
+ * allocated up front.
+ * <p>
+ * The window is updated incrementally, one sample at a time, but the spectrum
+ * is transformed again in full on every hop rather than with a sliding DFT. A
+ * sliding DFT updates every bin on every sample, which costs
+ * <code>size * hop</code> per hop against <code>size * log2(size)</code> for
+ * the FFT, so it only pays off for hops shorter than about ten samples. It
+ * also can't remove the mean of the window or apply the Hann window as
+ * cheaply, and it accumulates rounding errors.
+ */
+public final class SpectrumAnalyzer {
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final int size;
+    private final int hop;
+    private final FFT fft;
+    private final double[] window;
+    private final double windowSum;
+    private final SampleQueue queue;
+
+    private final Object lock = new Object();
+    private final double[] latest;
+    private double latestRate;
+    private volatile long version;
+
+    private volatile Thread worker;
+    private Thread stopped;
+    private volatile long busyNanos;
+    private volatile long transforms;
+
+    /**
+     * Creates a new analyzer
+     * @param size the number of samples of the window, a power of two
+     * @param hop the number of new samples between two spectrums
+     */
+    public SpectrumAnalyzer(int size, int hop) {
+        if (hop < 1 || hop > size) {
+            throw new IllegalArgumentException("Invalid hop: " + hop);
+        }
+        this.size = size;
+        this.hop = hop;
+        this.fft = new FFT(size);
+        this.window = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (size - 1));
+            sum += window[i];
+        }
+        this.windowSum = sum;
+        this.queue = new SampleQueue(1, Math.max(1024, 4 * hop));
+        this.latest = new double[getBins()];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getHop() {
+        return hop;
+    }
+
+    /**
+     * @return the number of frequency bins, from 0 to the Nyquist frequency
+     */
+    public int getBins() {
+        return size / 2 + 1;
+    }
+
+    /**
+     * @return a number that changes every time a new spectrum is published
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the average time of a transform, including the window, in
+     * nanoseconds
+     */
+    public long getAverageTransformTime() {
+        long n = transforms;
+        return n == 0 ? 0 : busyNanos / n;
+    }
+
+    /**
+     * @return the number of samples dropped because the worker was behind
+     */
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    /**
+     * Queues a sample. Only one thread may call it.
+     * @param timestamp the time of the sample, in milliseconds
+     * @param value the value
+     * @return false if the sample was dropped
+     */
+    public boolean offer(long timestamp, double value) {
+        return queue.offer(0, timestamp, value, 0, 0);
+    }
+
+    /**
+     * Copies the latest spectrum
+     * @param magnitudes receives the magnitude of each of the {@link #getBins()}
+     * bins
+     * @return the sample rate of the window of the spectrum, in Hz, so bin
+     * <code>k</code> is at <code>k * rate / size</code> Hz, or 0 if there is
+     * no spectrum yet
+     */
+    public double read(double[] magnitudes) {
+        synchronized (lock) {
+            System.arraycopy(latest, 0, magnitudes, 0, latest.length);
+            return latestRate;
+        }
+    }
+
+    /**
+     * Starts the worker thread, without waiting for the previous one to exit:
+     * the new one waits for it before taking any sample
+     */
+    public void start() {
+        if (worker != null) {
+            return;
+        }
+        Thread thread = new Thread(new Work(stopped), "spectrum-analyzer");
+        stopped = null;
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    public void stop() {
+        Thread thread = worker;
+        if (thread != null) {
+            worker = null;
+            stopped = thread;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private final class Work implements Runnable, SampleQueue.Sink {
+
+        private final double[] ring = new double[size];
+        private final long[] times = new long[size];
+        private final double[] re = new double[size];
+        private final double[] im = new double[size];
+        private final double[] magnitudes = new double[getBins()];
+        private final Thread previous;
+        private int position;
+        private long filled;
+        private int pending;
+
+        Work(Thread previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void run() {
+            if (previous != null) {
+                // the queue has a single consumer: the previous worker exits
+                // right after its current batch
+                try {
+                    previous.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            Thread self = Thread.currentThread();
+            while (worker == self) {
+                if (queue.drain(this, size) == 0) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+
+        @Override
+        public void accept(int type, long timestamp, double[] values, int offset) {
+            ring[position] = values[offset];
+            times[position] = timestamp;
+            position = (position + 1) % size;
+            filled++;
+            if (++pending >= hop && filled >= size) {
+                pending = 0;
+                transform();
+            }
+        }
+
+        private void transform() {
+            long start = System.nanoTime();
+            // position is now the oldest sample
+            double mean = 0;
+            for (int i = 0; i < size; i++) {
+                mean += ring[i];
+            }
+            mean /= size;
+            for (int i = 0; i < size; i++) {
+                re[i] = (ring[(position + i) % size] - mean) * window[i];
+                im[i] = 0;
+            }
+            fft.transform(re, im);
+            double scale = 2 / windowSum;
+            for (int k = 0; k < magnitudes.length; k++) {
+                magnitudes[k] = Math.sqrt(re[k] * re[k] + im[k] * im[k]) * scale;
+            }
+            long span = times[(position + size - 1) % size] - times[position];
+            double rate = span > 0 ? (size - 1) * 1000.0 / span : 0;
+            synchronized (lock) {
+                System.arraycopy(magnitudes, 0, latest, 0, magnitudes.length);
+                latestRate = rate;
+            }
+            version++;
+            busyNanos += System.nanoTime() - start;
+            transforms++;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * Scales the distance of each color component to the middle gray, through
+ * a lookup table computed once
+ */
+public final class ContrastStage implements PixelStage {
+
+    private final double factor;
+    private final int[] table = new int[256];
+
+    /**
+     * @param factor 1 to keep the contrast, more to raise it, less to lower
+     * it
+     */
+    public ContrastStage(double factor) {
+        if (factor < 0) {
+            throw new IllegalArgumentException("Invalid contrast: " + factor);
+        }
+        this.factor = factor;
+        for (int i = 0; i < 256; i++) {
+            table[i] = Math.max(0, Math.min(255, (int) Math.round((i - 127.5) * factor + 127.5)));
+        }
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    @Override
+    public String getName() {
+        return "contrast(" + factor + ")";
+    }
+
+    @Override
+    public int apply(int argb) {
+        return (argb & 0xff000000) |
+                table[(argb >> 16) & 0xff] << 16 |
+                table[(argb >> 8) & 0xff] << 8 |
+                table[argb & 0xff];
+    }
+
+    @Override
+    public void apply(int[] source, int[] target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            target[i] = apply(source[i]);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.gluonhq.gaf.down.image;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the orientation tag of the EXIF data of a JPEG file, without
+ * decoding the image: only the segments before the image data are read.
+ */
+public final class ExifOrientation {
+
+    private static final Logger LOG = Logger.getLogger(ExifOrientation.class.getName());
+
+    /**
+     * The orientation of an image shown as stored
+     */
+    public static final int NORMAL = 1;
+
+    private static final int SOI = 0xFFD8;
+    private static final int APP1 = 0xFFE1;
+    private static final int SOS = 0xFFDA;
+    private static final int EOI = 0xFFD9;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * @param file the image file
+     * @return the orientation, from 1 to 8, or {@link #NORMAL} if the file
+     * isn't a JPEG file or has no orientation
+     */
+    public static int read(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readUnsignedShort() != SOI) {
+                return NORMAL;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == SOS || marker == EOI) {
+                    return NORMAL;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return NORMAL;
+                }
+                if (marker == APP1) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    int orientation = parse(segment);
+                    if (orientation != 0) {
+                        return orientation;
+                    }
+                } else {
+                    skip(in, length);
+                }
+            }
+        } catch (EOFException e) {
+            return NORMAL;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading " + file, e);
+            return NORMAL;
+        }
+    }
+
+    /**
+     * @return the orientation in an APP1 segment, or 0 if it isn't EXIF data
+     * or has no valid orientation
+     */
+    private static int parse(byte[] s) {
+        // "Exif\0\0", then a TIFF header
+        if (s.length < 14 || s[0] != 'E' || s[1] != 'x' || s[2] != 'i' || s[3] != 'f' || s[4] != 0 || s[5] != 0) {
+            return 0;
+        }
+        int tiff = 6;
+        boolean little;
+        if (s[tiff] == 'I' && s[tiff + 1] == 'I') {
+            little = true;
+        } else if (s[tiff] == 'M' && s[tiff + 1] == 'M') {
+            little = false;
+        } else {
+            return 0;
+        }
+        long ifd = tiff + (read32(s, tiff + 4, little) & 0xFFFFFFFFL);
+        if (ifd + 2 > s.length) {
+            return 0;
+        }
+        int count = read16(s, (int) ifd, little);
+        for (int i = 0; i < count; i++) {
+            int entry = (int) ifd + 2 + 12 * i;
+            if (entry + 12 > s.length) {
+                return 0;
+            }
+            if (read16(s, entry, little) == ORIENTATION_TAG) {
+                // a SHORT, left aligned in the value field
+                int orientation = read16(s, entry + 8, little);
+                return orientation >= 1 && orientation <= 8 ? orientation : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static int read16(byte[] s, int i, boolean little) {
+        int a = s[i] & 0xff;
+        int b = s[i + 1] & 0xff;
+        return little ? b << 8 | a : a << 8 | b;
+    }
+
+    private static int read32(byte[] s, int i, boolean little) {
+        int hi = read16(s, little ? i + 2 : i, little);
+        int lo = read16(s, little ? i : i + 2, little);
+        return hi << 16 | lo;
+    }
+
+    private static void skip(DataInputStream in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * Replaces the color of each pixel with its luma, keeping the alpha
+ */
+public final class GrayscaleStage implements PixelStage {
+
+    @Override
+    public String getName() {
+        return "grayscale";
+    }
+
+    @Override
+    public int apply(int argb) {
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        // Rec. 601 weights, in 1/256
+        int y = (77 * r + 150 * g + 29 * b) >> 8;
+        return (argb & 0xff000000) | y << 16 | y << 8 | y;
+    }
+
+    @Override
+    public void apply(int[] source, int[] target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            target[i] = apply(source[i]);
+        }
+    }
+}
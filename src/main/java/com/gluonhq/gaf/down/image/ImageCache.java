@@ -0,0 +1,545 @@
+package com.gluonhq.gaf.down.image;
+
+import com.gluonhq.charm.down.Services;
+import com.gluonhq.charm.down.plugins.StorageService;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Two tier cache of decoded pictures, keyed by their file, the size they
+ * were decoded at and the processing they went through.
+ * <p>
+ * The memory tier is a least recently used map bounded in bytes, counted as
+ * four per pixel. Images evicted from it are still reachable through soft
+ * references until the garbage collector needs the memory, so the bound is
+ * a hard ceiling for what the cache holds, not for what it can reuse.
+ * <p>
+ * The disk tier keeps the renditions in a folder, as raw premultiplied ARGB
+ * pixels: there is no image encoder available on every platform, and reading
+ * them back is a copy from a mapped file, not a decode. It is bounded in
+ * bytes too, least recently used first, and an index file keeps the entries
+ * and their order across restarts. Each time a rendition larger than a
+ * thumbnail and without processing is stored, a thumbnail is scaled down from
+ * its pixels and stored as well, so a gallery doesn't have to decode the
+ * picture again.
+ * <p>
+ * A file is identified by its path, size and modification time, so a picture
+ * written again to the same path isn't mistaken for the previous one. The
+ * memory tier can be used from any thread, the disk tier does I/O and has to
+ * be used from background threads.
+ */
+public final class ImageCache {
+
+    /**
+     * The size of the box thumbnails fit in, in pixels
+     */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    /**
+     * The cache of the pictures views, in the <code>images</code> folder of
+     * the private storage, or only in memory if there is none
+     */
+    public static final ImageCache PICTURES = new ImageCache(Services.get(StorageService.class)
+            .flatMap(StorageService::getPrivateStorage)
+            .map(dir -> new File(dir, "images"))
+            .orElse(null), 32 * 1024 * 1024, 128 * 1024 * 1024);
+
+    private static final Logger LOG = Logger.getLogger(ImageCache.class.getName());
+
+    private static final String INDEX = "index";
+    private static final String SUFFIX = ".argb";
+    // 2: renditions are upright and processed
+    // 3: processed renditions have their own keys
+    private static final int INDEX_VERSION = 3;
+    private static final int MAGIC = 0x41524742; // ARGB
+    private static final int HEADER = 12;
+
+    private final File directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final Object indexLock = new Object();
+
+    private final LinkedHashMap<String, Image> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, SoftImage> soft = new HashMap<>();
+    private final ReferenceQueue<Image> cleared = new ReferenceQueue<>();
+    private long memoryBytes;
+
+    private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private boolean indexLoaded;
+
+    private long memoryHits, softHits, diskHits, misses;
+    private long memoryEvictions, diskEvictions;
+
+    /**
+     * Creates a cache
+     * @param directory the folder of the disk tier, created if needed, or
+     * null to keep images in memory only
+     * @param maxMemoryBytes the maximum size of the images held in memory
+     * @param maxDiskBytes the maximum size of the files on disk
+     */
+    public ImageCache(File directory, long maxMemoryBytes, long maxDiskBytes) {
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("Invalid cache size");
+        }
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Looks an image up in memory, without I/O other than reading the
+     * attributes of the file
+     * @param file the file of the picture
+     * @param width the maximum width it was decoded at
+     * @param height the maximum height it was decoded at
+     * @param variant the processing of the image, or null for none
+     * @return the image, or null if it isn't in memory
+     */
+    public Image getFromMemory(File file, int width, int height, String variant) {
+        String key = key(file, width, height, variant);
+        synchronized (this) {
+            return fromMemory(key);
+        }
+    }
+
+    /**
+     * Looks an image up in memory and then on disk. An image read from disk
+     * is put in memory.
+     * @param file the file of the picture
+     * @param width the maximum width it was decoded at
+     * @param height the maximum height it was decoded at
+     * @param variant the processing of the image, or null for none
+     * @return the image, or null if it isn't cached
+     */
+    public Image get(File file, int width, int height, String variant) {
+        String key = key(file, width, height, variant);
+        Entry entry;
+        synchronized (this) {
+            Image image = fromMemory(key);
+            if (image != null) {
+                return image;
+            }
+            loadIndex();
+            entry = disk.get(key);
+        }
+        Image image = entry == null ? null : read(key, entry);
+        synchronized (this) {
+            if (image == null) {
+                misses++;
+            } else {
+                diskHits++;
+                putInMemory(key, image);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Puts an image in memory
+     * @param file the file of the picture
+     * @param width the maximum width it was decoded at
+     * @param height the maximum height it was decoded at
+     * @param variant the processing of the image, or null for none
+     * @param image the decoded image
+     */
+    public void put(File file, int width, int height, String variant, Image image) {
+        String key = key(file, width, height, variant);
+        synchronized (this) {
+            putInMemory(key, image);
+        }
+    }
+
+    /**
+     * Writes an image to disk, and a thumbnail scaled down from it if it is
+     * larger, without processing, and there is none yet
+     * @param file the file of the picture
+     * @param width the maximum width it was decoded at
+     * @param height the maximum height it was decoded at
+     * @param variant the processing of the image, or null for none
+     * @param image the decoded image
+     */
+    public void store(File file, int width, int height, String variant, Image image) {
+        if (directory == null || image.getPixelReader() == null) {
+            return;
+        }
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        int[] pixels = new int[w * h];
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0, w);
+        write(key(file, width, height, variant), w, h, pixels);
+
+        // thumbnails are decoded without processing, so they are only
+        // scaled down from renditions without processing
+        if (variant == null && (w > THUMBNAIL_SIZE || h > THUMBNAIL_SIZE)) {
+            String key = key(file, THUMBNAIL_SIZE, THUMBNAIL_SIZE, null);
+            synchronized (this) {
+                if (disk.containsKey(key)) {
+                    return;
+                }
+            }
+            Raster thumbnail = new ImagePipeline(ForkJoinPool.commonPool(),
+                    new ResizeStage(THUMBNAIL_SIZE, THUMBNAIL_SIZE)).process(new Raster(w, h, pixels));
+            write(key, thumbnail.getWidth(), thumbnail.getHeight(), thumbnail.getPixels());
+        }
+    }
+
+    /**
+     * Removes all the images, from memory and disk
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            soft.clear();
+            memoryBytes = 0;
+            loadIndex();
+            for (Entry entry : disk.values()) {
+                new File(directory, entry.name).delete();
+            }
+            disk.clear();
+            diskBytes = 0;
+        }
+        writeIndex();
+    }
+
+    private Image fromMemory(String key) {
+        Image image = memory.get(key);
+        if (image != null) {
+            memoryHits++;
+            return image;
+        }
+        expunge();
+        SoftImage ref = soft.remove(key);
+        image = ref == null ? null : ref.get();
+        if (image != null) {
+            softHits++;
+            putInMemory(key, image);
+        }
+        return image;
+    }
+
+    private void putInMemory(String key, Image image) {
+        long size = bytes(image);
+        Image previous = memory.remove(key);
+        if (previous != null) {
+            memoryBytes -= bytes(previous);
+        }
+        if (size > maxMemoryBytes) {
+            soft.put(key, new SoftImage(key, image, cleared));
+            return;
+        }
+        soft.remove(key);
+        memory.put(key, image);
+        memoryBytes += size;
+        Iterator<Map.Entry<String, Image>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes) {
+            Map.Entry<String, Image> e = eldest.next();
+            memoryBytes -= bytes(e.getValue());
+            soft.put(e.getKey(), new SoftImage(e.getKey(), e.getValue(), cleared));
+            eldest.remove();
+            memoryEvictions++;
+        }
+    }
+
+    private void expunge() {
+        SoftImage ref;
+        while ((ref = (SoftImage) cleared.poll()) != null) {
+            soft.remove(ref.key, ref);
+        }
+    }
+
+    private Image read(String key, Entry entry) {
+        File file = new File(directory, entry.name);
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int w = buffer.getInt(4);
+            int h = buffer.getInt(8);
+            if (buffer.getInt(0) != MAGIC || channel.size() != HEADER + 4L * w * h) {
+                throw new IOException("Invalid cache file " + file);
+            }
+            buffer.position(HEADER);
+            WritableImage image = new WritableImage(w, h);
+            image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(),
+                    buffer.asIntBuffer(), w);
+            return image;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading " + file, e);
+            synchronized (this) {
+                if (disk.remove(key, entry)) {
+                    diskBytes -= entry.bytes;
+                }
+            }
+            file.delete();
+            writeIndex();
+            return null;
+        }
+    }
+
+    private void write(String key, int width, int height, int[] pixels) {
+        synchronized (this) {
+            // before writing, as it deletes the files without an entry
+            loadIndex();
+        }
+        String name = name(key);
+        File file = new File(directory, name);
+        File tmp = new File(directory, name + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4 * pixels.length);
+        buffer.putInt(MAGIC).putInt(width).putInt(height);
+        buffer.asIntBuffer().put(pixels);
+        buffer.clear();
+        try {
+            if (! directory.isDirectory() && ! directory.mkdirs()) {
+                throw new IOException("Error creating " + directory);
+            }
+            try (FileOutputStream out = new FileOutputStream(tmp);
+                    FileChannel channel = out.getChannel()) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            if (! tmp.renameTo(file)) {
+                file.delete();
+                if (! tmp.renameTo(file)) {
+                    throw new IOException("Error renaming " + tmp);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error writing " + file, e);
+            tmp.delete();
+            return;
+        }
+
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry entry = new Entry(name, file.length());
+            Entry previous = disk.put(key, entry);
+            if (previous != null) {
+                diskBytes -= previous.bytes;
+            }
+            diskBytes += entry.bytes;
+            Iterator<Entry> eldest = disk.values().iterator();
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                Entry e = eldest.next();
+                diskBytes -= e.bytes;
+                eldest.remove();
+                evicted.add(e);
+                diskEvictions++;
+            }
+        }
+        for (Entry e : evicted) {
+            new File(directory, e.name).delete();
+        }
+        writeIndex();
+    }
+
+    /**
+     * Reads the index the first time the disk tier is used, dropping the
+     * entries without a file and the files without an entry, left by a
+     * crash between writing one and the other
+     */
+    private void loadIndex() {
+        if (indexLoaded || directory == null) {
+            return;
+        }
+        indexLoaded = true;
+        File index = new File(directory, INDEX);
+        if (index.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+                if (in.readInt() != INDEX_VERSION) {
+                    throw new IOException("Unknown index version");
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    Entry entry = new Entry(in.readUTF(), in.readLong());
+                    if (new File(directory, entry.name).length() == entry.bytes) {
+                        disk.put(key, entry);
+                        diskBytes += entry.bytes;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error reading " + index, e);
+                disk.clear();
+                diskBytes = 0;
+            }
+        }
+        Set<String> names = new HashSet<>();
+        for (Entry entry : disk.values()) {
+            names.add(entry.name);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (! f.getName().equals(INDEX) && ! names.contains(f.getName())) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    private void writeIndex() {
+        if (directory == null) {
+            return;
+        }
+        synchronized (indexLock) {
+            List<String> keys;
+            List<Entry> entries;
+            synchronized (this) {
+                keys = new ArrayList<>(disk.keySet());
+                entries = new ArrayList<>(disk.values());
+            }
+            File index = new File(directory, INDEX);
+            File tmp = new File(directory, INDEX + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeInt(INDEX_VERSION);
+                    out.writeInt(keys.size());
+                    for (int i = 0; i < keys.size(); i++) {
+                        out.writeUTF(keys.get(i));
+                        out.writeUTF(entries.get(i).name);
+                        out.writeLong(entries.get(i).bytes);
+                    }
+                }
+                if (! tmp.renameTo(index)) {
+                    index.delete();
+                    if (! tmp.renameTo(index)) {
+                        throw new IOException("Error renaming " + tmp);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error writing " + index, e);
+                tmp.delete();
+            }
+        }
+    }
+
+    private static String key(File file, int width, int height, String variant) {
+        String key = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified() +
+                '|' + width + 'x' + height;
+        return variant == null ? key : key + '|' + variant;
+    }
+
+    private static String name(String key) {
+        return hash(key) + SUFFIX;
+    }
+
+    /**
+     * @return the SHA-1 of the text, in hexadecimal, to name files after it
+     */
+    static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                hash.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long bytes(Image image) {
+        return 4L * (long) image.getWidth() * (long) image.getHeight();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * @return the number of lookups found in the memory tier
+     */
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /**
+     * @return the number of lookups found through the soft references, after
+     * being evicted from the memory tier
+     */
+    public synchronized long getSoftHits() {
+        return softHits;
+    }
+
+    /**
+     * @return the number of lookups found in the disk tier
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * @return the number of lookups of {@link #get(File, int, int, String)}
+     * found in no tier
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getMemoryEvictions() {
+        return memoryEvictions;
+    }
+
+    public synchronized long getDiskEvictions() {
+        return diskEvictions;
+    }
+
+    private static final class Entry {
+
+        private final String name;
+        private final long bytes;
+
+        Entry(String name, long bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class SoftImage extends SoftReference<Image> {
+
+        private final String key;
+
+        SoftImage(String key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.gluonhq.gaf.down.image;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * Decodes images on background threads, downsampled to the size they are
+ * shown at, and hands them over on the JavaFX Application Thread.
+ * <p>
+ * A camera picture of 12 MP takes 48 MB once decoded at full size, while
+ * a view the width of the screen needs a tenth of that: the image is decoded
+ * with a requested size, preserving its ratio, so the full size pixels are
+ * never held.
+ * <p>
+ * With an {@link ImageCache}, files are looked up in memory first, and
+ * handed over right away when found, then on disk, and are only decoded
+ * when neither has them.
+ * <p>
+ * Files are turned upright according to their EXIF orientation, and go
+ * through the stages given to the loader, with an {@link ImagePipeline},
+ * before they are handed over and cached.
+ */
+public final class ImageLoader {
+
+    private static final Logger LOG = Logger.getLogger(ImageLoader.class.getName());
+
+    private final ExecutorService executor;
+    private final ImageCache cache;
+    private final ImageStage[] stages;
+    private final String variant;
+
+    /**
+     * Creates a loader without cache
+     * @param threads the number of decoding threads
+     */
+    public ImageLoader(int threads) {
+        this(threads, null);
+    }
+
+    /**
+     * Creates a loader
+     * @param threads the number of decoding threads
+     * @param cache the cache of the images loaded from files, or null
+     * @param stages the processing of the images loaded from files. Their
+     * names are part of the cache keys, so loaders with other stages can
+     * share the cache.
+     */
+    public ImageLoader(int threads, ImageCache cache, ImageStage... stages) {
+        this.cache = cache;
+        this.stages = stages.clone();
+        this.variant = variant(stages);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "image-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads an image in the background
+     * @param url the URL of the image
+     * @param width the maximum width of the image, or 0 for its own
+     * @param height the maximum height of the image, or 0 for its own
+     * @param onLoaded called on the JavaFX Application Thread with the image,
+     * or with null if it couldn't be decoded, unless the request is cancelled
+     * first
+     * @return the request
+     */
+    public Request load(String url, double width, double height, Consumer<Image> onLoaded) {
+        Request request = new Request();
+        request.future = executor.submit(() -> {
+            if (request.cancelled) {
+                return;
+            }
+            handOver(request, decode(url, width, height), onLoaded);
+        });
+        return request;
+    }
+
+    /**
+     * Loads an image from a file in the background, through the cache if
+     * there is one, and processes it. If the image is in memory, the callback
+     * is called before returning.
+     * @param file the image file
+     * @param width the maximum width of the image, or 0 for its own
+     * @param height the maximum height of the image, or 0 for its own
+     * @param onLoaded called on the JavaFX Application Thread with the image,
+     * or with null if it couldn't be decoded, unless the request is cancelled
+     * first
+     * @return the request
+     */
+    public Request load(File file, double width, double height, Consumer<Image> onLoaded) {
+        // the cache keys need whole sizes
+        int w = (int) Math.ceil(Math.max(0, width));
+        int h = (int) Math.ceil(Math.max(0, height));
+        Request request = new Request();
+        Image cached = cache == null ? null : cache.getFromMemory(file, w, h, variant);
+        if (cached != null) {
+            deliver(request, cached, onLoaded);
+            return request;
+        }
+        request.future = executor.submit(() -> {
+            if (request.cancelled) {
+                return;
+            }
+            Image image = cache == null ? null : cache.get(file, w, h, variant);
+            if (image != null) {
+                handOver(request, image, onLoaded);
+                return;
+            }
+            image = decode(file, w, h, stages);
+            if (image != null && cache != null) {
+                cache.put(file, w, h, variant, image);
+            }
+            handOver(request, image, onLoaded);
+            // after handing over, so the view doesn't wait for the disk
+            if (image != null && cache != null) {
+                cache.store(file, w, h, variant, image);
+            }
+        });
+        return request;
+    }
+
+    public ImageCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the names of the stages, or null if there are none
+     */
+    private static String variant(ImageStage[] stages) {
+        if (stages.length == 0) {
+            return null;
+        }
+        StringBuilder variant = new StringBuilder();
+        for (ImageStage stage : stages) {
+            variant.append(variant.length() == 0 ? "" : "+").append(stage.getName());
+        }
+        return variant.toString();
+    }
+
+    static Image decode(String url, double width, double height) {
+        // synchronous: this is the background thread
+        Image image = new Image(url, Math.max(0, width), Math.max(0, height), true, true, false);
+        if (image.isError()) {
+            LOG.log(Level.WARNING, "Error decoding " + url, image.getException());
+            return null;
+        }
+        return image;
+    }
+
+    /**
+     * Decodes a file to fit in a box once upright, and processes it
+     */
+    static Image decode(File file, double width, double height, ImageStage... stages) {
+        int orientation = ExifOrientation.read(file);
+        boolean transposed = OrientationStage.isTransposed(orientation);
+        // the box of the pixels as stored
+        Image image = decode(file.toURI().toString(), transposed ? height : width, transposed ? width : height);
+        if (image == null || (orientation == ExifOrientation.NORMAL && stages.length == 0)) {
+            return image;
+        }
+        List<ImageStage> all = new ArrayList<>(stages.length + 1);
+        if (orientation != ExifOrientation.NORMAL) {
+            all.add(new OrientationStage(orientation));
+        }
+        Collections.addAll(all, stages);
+        return new ImagePipeline(ForkJoinPool.commonPool(), all.toArray(new ImageStage[all.size()])).process(image);
+    }
+
+    static void handOver(Request request, Image image, Consumer<Image> onLoaded) {
+        Platform.runLater(() -> deliver(request, image, onLoaded));
+    }
+
+    static void deliver(Request request, Image image, Consumer<Image> onLoaded) {
+        if (! request.cancelled) {
+            request.done = true;
+            onLoaded.accept(image);
+        }
+    }
+
+    /**
+     * Stops the decoding threads. Pending requests are not run.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A request to load an image
+     */
+    public static final class Request {
+
+        private volatile boolean cancelled;
+        private boolean done;
+        private Future<?> future;
+
+        /**
+         * Cancels the request: if the image is not decoded yet it won't be,
+         * and the callback won't be called. It has to be called from the
+         * JavaFX Application Thread.
+         */
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return true once the callback has been called
+         */
+        public boolean isDone() {
+            return done;
+        }
+    }
+}
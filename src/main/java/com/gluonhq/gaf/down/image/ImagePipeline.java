@@ -0,0 +1,201 @@
+package com.gluonhq.gaf.down.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A fixed sequence of {@link ImageStage}s, applied in order to a
+ * {@link Raster}.
+ * <p>
+ * Consecutive {@link PixelStage}s are fused into one pass, in place, that
+ * applies them in turn to a chunk of pixels small enough to stay in the
+ * cache before moving to the next chunk: the pixels come from memory once
+ * instead of once per stage, and each stage still runs its own tight loop. The other stages
+ * write to a second raster, and the two are swapped after each pass. Each
+ * pass splits the target in bands of rows that are processed in parallel on
+ * a fork-join pool, or on the calling thread if there is none.
+ */
+public final class ImagePipeline {
+
+    /**
+     * The smallest band a pass is split into, in pixels: smaller bands cost
+     * more in scheduling than they gain in parallelism
+     */
+    private static final int MIN_BAND_PIXELS = 16 * 1024;
+
+    /**
+     * The pixels a fused pass applies all its stages to before moving on:
+     * 16 KB, that fit in the L1 data cache
+     */
+    private static final int CHUNK_PIXELS = 4 * 1024;
+
+    private final ForkJoinPool pool;
+    private final ImageStage[] passes;
+
+    /**
+     * Creates a pipeline
+     * @param pool the pool that processes the bands, or null to process
+     * them on the calling thread
+     * @param stages the stages
+     */
+    public ImagePipeline(ForkJoinPool pool, ImageStage... stages) {
+        this.pool = pool;
+        this.passes = fuse(stages);
+    }
+
+    /**
+     * @return the number of passes over the pixels, after fusing the stages
+     */
+    public int getPassCount() {
+        return passes.length;
+    }
+
+    /**
+     * Processes a raster
+     * @param input the raster, that may be overwritten
+     * @return the processed raster, that may be the input
+     */
+    public Raster process(Raster input) {
+        Raster source = input;
+        Raster spare = null;
+        for (ImageStage pass : passes) {
+            Raster target;
+            if (pass instanceof PixelStage) {
+                target = source;
+            } else {
+                int w = pass.getWidth(source.getWidth(), source.getHeight());
+                int h = pass.getHeight(source.getWidth(), source.getHeight());
+                target = spare != null && spare.getPixels().length >= w * h ?
+                        new Raster(w, h, spare.getPixels()) : new Raster(w, h);
+            }
+            run(pass, source, target);
+            if (target != source) {
+                spare = source;
+                source = target;
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Processes an image: its pixels are read in bulk, processed, and
+     * written in bulk to a new image
+     * @param image the image, loaded
+     * @return the processed image
+     */
+    public WritableImage process(Image image) {
+        Raster raster = process(Raster.of(image));
+        if (raster.getPixels().length != raster.getWidth() * raster.getHeight()) {
+            // a spare array larger than needed
+            int[] pixels = new int[raster.getWidth() * raster.getHeight()];
+            System.arraycopy(raster.getPixels(), 0, pixels, 0, pixels.length);
+            raster = new Raster(raster.getWidth(), raster.getHeight(), pixels);
+        }
+        return raster.toImage();
+    }
+
+    private void run(ImageStage pass, Raster source, Raster target) {
+        int rows = target.getHeight();
+        int band = Math.max(1, MIN_BAND_PIXELS / Math.max(1, target.getWidth()));
+        if (pool == null || rows <= band) {
+            pass.process(source, target, 0, rows);
+        } else {
+            pool.invoke(new Band(pass, source, target, 0, rows, band));
+        }
+    }
+
+    private static ImageStage[] fuse(ImageStage[] stages) {
+        List<ImageStage> passes = new ArrayList<>();
+        List<PixelStage> run = new ArrayList<>();
+        for (ImageStage stage : stages) {
+            if (stage instanceof PixelStage) {
+                run.add((PixelStage) stage);
+            } else {
+                flush(run, passes);
+                passes.add(stage);
+            }
+        }
+        flush(run, passes);
+        return passes.toArray(new ImageStage[passes.size()]);
+    }
+
+    private static void flush(List<PixelStage> run, List<ImageStage> passes) {
+        if (run.size() == 1) {
+            passes.add(run.get(0));
+        } else if (run.size() > 1) {
+            passes.add(new FusedStage(run.toArray(new PixelStage[run.size()])));
+        }
+        run.clear();
+    }
+
+    /**
+     * Consecutive pixel stages, applied in turn to each chunk of pixels
+     */
+    private static final class FusedStage implements PixelStage {
+
+        private final PixelStage[] stages;
+
+        FusedStage(PixelStage[] stages) {
+            this.stages = stages;
+        }
+
+        @Override
+        public String getName() {
+            StringBuilder name = new StringBuilder();
+            for (PixelStage stage : stages) {
+                name.append(name.length() == 0 ? "" : "+").append(stage.getName());
+            }
+            return name.toString();
+        }
+
+        @Override
+        public int apply(int argb) {
+            for (PixelStage stage : stages) {
+                argb = stage.apply(argb);
+            }
+            return argb;
+        }
+
+        @Override
+        public void apply(int[] source, int[] target, int from, int to) {
+            for (int start = from; start < to; start += CHUNK_PIXELS) {
+                int end = Math.min(to, start + CHUNK_PIXELS);
+                stages[0].apply(source, target, start, end);
+                for (int i = 1; i < stages.length; i++) {
+                    stages[i].apply(target, target, start, end);
+                }
+            }
+        }
+    }
+
+    private static final class Band extends RecursiveAction {
+
+        private final ImageStage pass;
+        private final Raster source, target;
+        private final int from, to, band;
+
+        Band(ImageStage pass, Raster source, Raster target, int from, int to, int band) {
+            this.pass = pass;
+            this.source = source;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+            this.band = band;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= band) {
+                pass.process(source, target, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Band(pass, source, target, from, middle, band),
+                        new Band(pass, source, target, middle, to, band));
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * A stage of an {@link ImagePipeline}: computes the pixels of a target
+ * raster from a source raster.
+ * <p>
+ * The pipeline splits the target in bands of rows and processes them
+ * concurrently, so stages keep no state that changes while processing, and
+ * only write the rows they are given.
+ */
+public interface ImageStage {
+
+    /**
+     * @return the name of the stage and its parameters, part of the cache
+     * keys of the images it processed: stages that compute different pixels
+     * have different names
+     */
+    String getName();
+
+    /**
+     * @return the width of the target for a source of the given size
+     */
+    default int getWidth(int width, int height) {
+        return width;
+    }
+
+    /**
+     * @return the height of the target for a source of the given size
+     */
+    default int getHeight(int width, int height) {
+        return height;
+    }
+
+    /**
+     * Computes a band of rows of the target
+     * @param source the source raster
+     * @param target the target raster, of the size given by this stage
+     * @param from the first row of the band
+     * @param to the row after the last row of the band
+     */
+    void process(Raster source, Raster target, int from, int to);
+}
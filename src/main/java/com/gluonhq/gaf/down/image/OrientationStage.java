@@ -0,0 +1,99 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * Turns an image upright, according to its EXIF orientation: cameras store
+ * the pixels as the sensor reads them, and record how they have to be
+ * rotated or flipped to be shown, which the image decoder ignores.
+ *
+ * @see ExifOrientation
+ */
+public final class OrientationStage implements ImageStage {
+
+    private final int orientation;
+
+    /**
+     * @param orientation the EXIF orientation, from 1 to 8
+     */
+    public OrientationStage(int orientation) {
+        if (orientation < 1 || orientation > 8) {
+            throw new IllegalArgumentException("Invalid orientation: " + orientation);
+        }
+        this.orientation = orientation;
+    }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return true if the orientation swaps the width and the height
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation >= 5;
+    }
+
+    @Override
+    public String getName() {
+        return "orientation(" + orientation + ")";
+    }
+
+    @Override
+    public int getWidth(int width, int height) {
+        return isTransposed(orientation) ? height : width;
+    }
+
+    @Override
+    public int getHeight(int width, int height) {
+        return isTransposed(orientation) ? width : height;
+    }
+
+    @Override
+    public void process(Raster source, Raster target, int from, int to) {
+        int sw = source.getWidth();
+        int sh = source.getHeight();
+        int tw = target.getWidth();
+        int[] src = source.getPixels();
+        int[] dst = target.getPixels();
+        for (int y = from; y < to; y++) {
+            int i = y * tw;
+            switch (orientation) {
+                case 1:
+                    System.arraycopy(src, y * sw, dst, i, tw);
+                    break;
+                case 2: // mirrored
+                    for (int x = 0, s = y * sw + sw - 1; x < tw; x++, s--) {
+                        dst[i + x] = src[s];
+                    }
+                    break;
+                case 3: // upside down
+                    for (int x = 0, s = (sh - 1 - y) * sw + sw - 1; x < tw; x++, s--) {
+                        dst[i + x] = src[s];
+                    }
+                    break;
+                case 4: // upside down, mirrored
+                    System.arraycopy(src, (sh - 1 - y) * sw, dst, i, tw);
+                    break;
+                case 5: // transposed
+                    for (int x = 0, s = y; x < tw; x++, s += sw) {
+                        dst[i + x] = src[s];
+                    }
+                    break;
+                case 6: // rotated 90 degrees clockwise to be shown
+                    for (int x = 0, s = (sh - 1) * sw + y; x < tw; x++, s -= sw) {
+                        dst[i + x] = src[s];
+                    }
+                    break;
+                case 7: // transversed
+                    for (int x = 0, s = (sh - 1) * sw + sw - 1 - y; x < tw; x++, s -= sw) {
+                        dst[i + x] = src[s];
+                    }
+                    break;
+                default: // 8: rotated 90 degrees counterclockwise to be shown
+                    for (int x = 0, s = sw - 1 - y; x < tw; x++, s += sw) {
+                        dst[i + x] = src[s];
+                    }
+                    break;
+            }
+        }
+    }
+}
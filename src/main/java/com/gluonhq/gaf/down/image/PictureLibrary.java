@@ -0,0 +1,184 @@
+package com.gluonhq.gaf.down.image;
+
+import com.gluonhq.charm.down.Services;
+import com.gluonhq.charm.down.plugins.StorageService;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * The picture files of a set of folders, newest first, and the one picked
+ * to be shown.
+ * <p>
+ * Folders are scanned on a background thread, and the list is replaced on
+ * the JavaFX Application Thread once the scan is done.
+ */
+public final class PictureLibrary {
+
+    /**
+     * The pictures in the <code>DCIM</code> and <code>Pictures</code> folders
+     * of the public storage, shared by the views
+     */
+    public static final PictureLibrary DEVICE = new PictureLibrary(Stream.of("DCIM", "Pictures")
+            .map(name -> Services.get(StorageService.class).flatMap(s -> s.getPublicStorage(name)))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList()));
+
+    private static final List<String> EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png");
+    private static final int MAX_DEPTH = 4;
+
+    private final List<File> folders;
+    private final ObservableList<File> pictures = FXCollections.observableArrayList();
+    private final ObservableList<File> unmodifiablePictures = FXCollections.unmodifiableObservableList(pictures);
+    private final ReadOnlyBooleanWrapper scanning = new ReadOnlyBooleanWrapper(this, "scanning");
+    private final ObjectProperty<File> selected = new SimpleObjectProperty<>(this, "selected");
+    // the pictures added while a scan runs, that it may have missed
+    private final Set<File> addedWhileScanning = new LinkedHashSet<>();
+
+    /**
+     * Creates a library
+     * @param folders the folders with pictures, scanned with their
+     * subfolders
+     */
+    public PictureLibrary(List<File> folders) {
+        this.folders = new ArrayList<>(folders);
+    }
+
+    public List<File> getFolders() {
+        return Collections.unmodifiableList(folders);
+    }
+
+    /**
+     * @return the pictures, newest first
+     */
+    public ObservableList<File> getPictures() {
+        return unmodifiablePictures;
+    }
+
+    /**
+     * Scans the folders in the background, unless a scan is running. It has
+     * to be called from the JavaFX Application Thread.
+     */
+    public void scan() {
+        if (scanning.get()) {
+            return;
+        }
+        scanning.set(true);
+        Thread thread = new Thread(() -> {
+            List<File> files = new ArrayList<>();
+            for (File folder : folders) {
+                collect(folder, 0, files);
+            }
+            // reading the dates once, not on every comparison
+            long[] dates = new long[files.size()];
+            Integer[] order = new Integer[files.size()];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = files.get(i).lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(dates[b], dates[a]));
+            List<File> sorted = new ArrayList<>(order.length);
+            for (Integer i : order) {
+                sorted.add(files.get(i));
+            }
+            Platform.runLater(() -> {
+                // pictures added while scanning are kept, newest first, and
+                // the other pictures the scan didn't find are gone
+                Set<File> found = new HashSet<>(sorted);
+                List<File> added = new ArrayList<>();
+                for (File file : addedWhileScanning) {
+                    if (! found.contains(file)) {
+                        added.add(0, file);
+                    }
+                }
+                addedWhileScanning.clear();
+                sorted.addAll(0, added);
+                pictures.setAll(sorted);
+                scanning.set(false);
+            });
+        }, "picture-library");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void collect(File folder, int depth, List<File> files) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                if (depth < MAX_DEPTH && ! child.getName().startsWith(".")) {
+                    collect(child, depth + 1, files);
+                }
+            } else if (isPicture(child)) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static boolean isPicture(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a picture at the top of the list, if it isn't there already, like
+     * one just taken. It has to be called from the JavaFX Application Thread.
+     * @param file the picture file
+     */
+    public void add(File file) {
+        if (scanning.get()) {
+            addedWhileScanning.add(file);
+        }
+        if (! pictures.contains(file)) {
+            pictures.add(0, file);
+        }
+    }
+
+    public ReadOnlyBooleanProperty scanningProperty() {
+        return scanning.getReadOnlyProperty();
+    }
+
+    public boolean isScanning() {
+        return scanning.get();
+    }
+
+    // --- selected
+    /**
+     * The picture picked to be shown by the pictures view
+     */
+    public ObjectProperty<File> selectedProperty() {
+        return selected;
+    }
+
+    public File getSelected() {
+        return selected.get();
+    }
+
+    public void setSelected(File value) {
+        selected.set(value);
+    }
+}
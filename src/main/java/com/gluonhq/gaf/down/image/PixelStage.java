@@ -0,0 +1,37 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * A stage that computes each pixel from the same pixel of the source only.
+ * <p>
+ * These stages keep the size of the image and can work in place, and the
+ * pipeline fuses consecutive ones into a single pass over the pixels.
+ */
+public interface PixelStage extends ImageStage {
+
+    /**
+     * @param argb the source pixel
+     * @return the target pixel
+     */
+    int apply(int argb);
+
+    /**
+     * Applies the stage to a range of pixels. Implementations override it
+     * with this same loop: the call to {@link #apply(int)} is then bound to
+     * their own class and inlined, where in this shared loop it is a call
+     * through the interface for each pixel.
+     * @param source the source pixels
+     * @param target the target pixels, that may be the source
+     * @param from the index of the first pixel
+     * @param to the index after the last pixel
+     */
+    default void apply(int[] source, int[] target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            target[i] = apply(source[i]);
+        }
+    }
+
+    @Override
+    default void process(Raster source, Raster target, int from, int to) {
+        apply(source.getPixels(), target.getPixels(), from * source.getWidth(), to * source.getWidth());
+    }
+}
@@ -0,0 +1,79 @@
+package com.gluonhq.gaf.down.image;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * The pixels of an image in a plain array, one ARGB int per pixel, row by
+ * row, so they can be processed in bulk without going through a
+ * {@link javafx.scene.image.PixelReader} per pixel.
+ */
+public final class Raster {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    /**
+     * Creates a transparent raster
+     * @param width the width, in pixels
+     * @param height the height, in pixels
+     */
+    public Raster(int width, int height) {
+        this(width, height, new int[width * height]);
+    }
+
+    /**
+     * Wraps an array of pixels, that isn't copied
+     * @param width the width, in pixels
+     * @param height the height, in pixels
+     * @param pixels the ARGB pixels, at least width * height
+     */
+    public Raster(int width, int height, int[] pixels) {
+        if (width < 0 || height < 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Invalid raster: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Reads the pixels of an image, in one call to the pixel reader
+     * @param image the image, loaded
+     * @return a raster with the non premultiplied pixels of the image
+     */
+    public static Raster of(Image image) {
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        Raster raster = new Raster(w, h);
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), raster.pixels, 0, w);
+        return raster;
+    }
+
+    /**
+     * @return a new image with the pixels of this raster, written in one
+     * call to the pixel writer
+     */
+    public WritableImage toImage() {
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return image;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the pixels, not a copy
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,73 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * Scales the image down to fit in a box, keeping its ratio, averaging the
+ * source pixels that each target pixel covers. Images that fit already keep
+ * their size.
+ */
+public final class ResizeStage implements ImageStage {
+
+    private final int maxWidth;
+    private final int maxHeight;
+
+    /**
+     * @param maxWidth the width of the box, in pixels
+     * @param maxHeight the height of the box, in pixels
+     */
+    public ResizeStage(int maxWidth, int maxHeight) {
+        if (maxWidth < 1 || maxHeight < 1) {
+            throw new IllegalArgumentException("Invalid size: " + maxWidth + "x" + maxHeight);
+        }
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    @Override
+    public String getName() {
+        return "resize(" + maxWidth + "x" + maxHeight + ")";
+    }
+
+    private double scale(int width, int height) {
+        return Math.min(1, Math.min((double) maxWidth / width, (double) maxHeight / height));
+    }
+
+    @Override
+    public int getWidth(int width, int height) {
+        return Math.max(1, (int) Math.round(width * scale(width, height)));
+    }
+
+    @Override
+    public int getHeight(int width, int height) {
+        return Math.max(1, (int) Math.round(height * scale(width, height)));
+    }
+
+    @Override
+    public void process(Raster source, Raster target, int from, int to) {
+        int sw = source.getWidth();
+        int sh = source.getHeight();
+        int dw = target.getWidth();
+        int dh = target.getHeight();
+        int[] src = source.getPixels();
+        int[] dst = target.getPixels();
+        for (int y = from; y < to; y++) {
+            int y0 = (int) ((long) y * sh / dh);
+            int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * sh / dh));
+            for (int x = 0; x < dw; x++) {
+                int x0 = (int) ((long) x * sw / dw);
+                int x1 = Math.max(x0 + 1, (int) ((long) (x + 1) * sw / dw));
+                int a = 0, r = 0, g = 0, b = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    for (int i = sy * sw + x0, end = sy * sw + x1; i < end; i++) {
+                        int p = src[i];
+                        a += p >>> 24;
+                        r += (p >> 16) & 0xff;
+                        g += (p >> 8) & 0xff;
+                        b += p & 0xff;
+                    }
+                }
+                int n = (y1 - y0) * (x1 - x0);
+                dst[y * dw + x] = (a / n) << 24 | (r / n) << 16 | (g / n) << 8 | (b / n);
+            }
+        }
+    }
+}
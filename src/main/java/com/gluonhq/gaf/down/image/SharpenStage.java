@@ -0,0 +1,59 @@
+package com.gluonhq.gaf.down.image;
+
+/**
+ * Sharpens with a 3x3 unsharp mask: each color component is pushed away
+ * from the average of its four neighbours. Pixels out of the image repeat
+ * the edge.
+ */
+public final class SharpenStage implements ImageStage {
+
+    // the weights in 1/256
+    private final int center;
+    private final int neighbour;
+
+    /**
+     * @param amount 0 to keep the image, up to 1 for a strong sharpening
+     */
+    public SharpenStage(double amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        this.neighbour = (int) Math.round(amount * 256);
+        this.center = 256 + 4 * neighbour;
+    }
+
+    @Override
+    public String getName() {
+        return "sharpen(" + neighbour + ")";
+    }
+
+    @Override
+    public void process(Raster source, Raster target, int from, int to) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        int[] src = source.getPixels();
+        int[] dst = target.getPixels();
+        for (int y = from; y < to; y++) {
+            int row = y * w;
+            int up = Math.max(0, y - 1) * w;
+            int down = Math.min(h - 1, y + 1) * w;
+            for (int x = 0; x < w; x++) {
+                int c = src[row + x];
+                int l = src[row + Math.max(0, x - 1)];
+                int r = src[row + Math.min(w - 1, x + 1)];
+                int u = src[up + x];
+                int d = src[down + x];
+                dst[row + x] = (c & 0xff000000) |
+                        sharpen(c, l, r, u, d, 16) << 16 |
+                        sharpen(c, l, r, u, d, 8) << 8 |
+                        sharpen(c, l, r, u, d, 0);
+            }
+        }
+    }
+
+    private int sharpen(int c, int l, int r, int u, int d, int shift) {
+        int sum = ((l >> shift) & 0xff) + ((r >> shift) & 0xff) + ((u >> shift) & 0xff) + ((d >> shift) & 0xff);
+        int v = (center * ((c >> shift) & 0xff) - neighbour * sum + 128) >> 8;
+        return v < 0 ? 0 : v > 255 ? 255 : v;
+    }
+}
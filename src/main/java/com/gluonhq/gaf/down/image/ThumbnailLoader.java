@@ -0,0 +1,151 @@
+package com.gluonhq.gaf.down.image;
+
+import java.io.File;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.scene.image.Image;
+
+/**
+ * Loads the thumbnails of a gallery in the background, through an
+ * {@link ImageCache}.
+ * <p>
+ * Pending requests are kept in a priority queue, the most recent first: the
+ * cells of a scrolling gallery request the thumbnails as they come into
+ * view, so the ones on screen are loaded before the ones that have been
+ * scrolled past. A cell cancels its request when it is reused for another
+ * picture, and cancelled requests are dropped without decoding, so a fling
+ * through hundreds of pictures only decodes where it stops.
+ * <p>
+ * Thumbnails are turned upright according to their EXIF orientation.
+ */
+public final class ThumbnailLoader {
+
+    private static final Logger LOG = Logger.getLogger(ThumbnailLoader.class.getName());
+
+    private final ImageCache cache;
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private final Thread[] workers;
+    private long sequence;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a loader
+     * @param cache the cache of the thumbnails
+     * @param threads the number of decoding threads
+     */
+    public ThumbnailLoader(ImageCache cache, int threads) {
+        this.cache = cache;
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "thumbnail-loader-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Loads the thumbnail of a picture, that fits in a box of
+     * {@link ImageCache#THUMBNAIL_SIZE}. It has to be called from the JavaFX
+     * Application Thread. If the thumbnail is in memory, the callback is
+     * called before returning.
+     * @param file the picture file
+     * @param onLoaded called on the JavaFX Application Thread with the
+     * thumbnail, or with null if it couldn't be decoded, unless the request
+     * is cancelled first
+     * @return the request
+     */
+    public ImageLoader.Request load(File file, Consumer<Image> onLoaded) {
+        ImageLoader.Request request = new ImageLoader.Request();
+        Image cached = cache.getFromMemory(file, ImageCache.THUMBNAIL_SIZE, ImageCache.THUMBNAIL_SIZE, null);
+        if (cached != null) {
+            ImageLoader.deliver(request, cached, onLoaded);
+            return request;
+        }
+        synchronized (queue) {
+            queue.add(new Task(++sequence, file, request, onLoaded));
+            queue.notify();
+        }
+        return request;
+    }
+
+    /**
+     * @return the number of requests waiting, including cancelled ones that
+     * haven't been dropped yet
+     */
+    public int getPending() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Stops the decoding threads. Pending requests are not run.
+     */
+    public void shutdown() {
+        shutdown = true;
+        synchronized (queue) {
+            queue.clear();
+            queue.notifyAll();
+        }
+    }
+
+    private void work() {
+        while (! shutdown) {
+            Task task;
+            synchronized (queue) {
+                while (queue.isEmpty() && ! shutdown) {
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                task = queue.poll();
+            }
+            if (task == null || task.request.isCancelled()) {
+                continue;
+            }
+            try {
+                ImageLoader.handOver(task.request, load(task.file), task.onLoaded);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Error loading the thumbnail of " + task.file, e);
+            }
+        }
+    }
+
+    private Image load(File file) {
+        int size = ImageCache.THUMBNAIL_SIZE;
+        Image image = cache.get(file, size, size, null);
+        if (image == null) {
+            image = ImageLoader.decode(file, size, size);
+            if (image != null) {
+                cache.put(file, size, size, null, image);
+                cache.store(file, size, size, null, image);
+            }
+        }
+        return image;
+    }
+
+    private static final class Task implements Comparable<Task> {
+
+        private final long sequence;
+        private final File file;
+        private final ImageLoader.Request request;
+        private final Consumer<Image> onLoaded;
+
+        Task(long sequence, File file, ImageLoader.Request request, Consumer<Image> onLoaded) {
+            this.sequence = sequence;
+            this.file = file;
+            this.request = request;
+            this.onLoaded = onLoaded;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            // the most recent first
+            return Long.compare(o.sequence, sequence);
+        }
+    }
+}
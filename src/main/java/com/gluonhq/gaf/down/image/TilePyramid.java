@@ -0,0 +1,292 @@
+package com.gluonhq.gaf.down.image;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A picture stored at decreasing resolutions, from its own down to one that
+ * fits in a tile, each level half the size of the previous one, so a viewer
+ * can read the square tiles of the level that matches its zoom, and only
+ * those on screen.
+ * <p>
+ * Each level is a file of raw ARGB pixels in a folder named after the
+ * picture, that is memory mapped when the pyramid is opened: reading a tile
+ * copies its rows, without decoding anything, and the pixels that aren't
+ * read don't take memory. Building the pyramid decodes the picture once at
+ * its own size and holds one level at a time; each level is scaled down from
+ * the previous one.
+ */
+public final class TilePyramid {
+
+    /**
+     * The size of the tiles, in pixels
+     */
+    public static final int TILE_SIZE = 256;
+
+    private static final String INDEX = "pyramid";
+    private static final int INDEX_VERSION = 1;
+    private static final int MAGIC = 0x41524742; // ARGB
+    private static final int HEADER = 12;
+    private static final int WRITE_ROWS = 64;
+
+    private final File directory;
+    private final int[] widths;
+    private final int[] heights;
+    private final IntBuffer[] levels;
+
+    private TilePyramid(File directory, int[] widths, int[] heights) throws IOException {
+        this.directory = directory;
+        this.widths = widths;
+        this.heights = heights;
+        this.levels = new IntBuffer[widths.length];
+        for (int level = 0; level < levels.length; level++) {
+            try (RandomAccessFile file = new RandomAccessFile(levelFile(directory, level), "r");
+                    FileChannel channel = file.getChannel()) {
+                if (channel.size() != HEADER + 4L * widths[level] * heights[level]) {
+                    throw new IOException("Invalid level " + level + " in " + directory);
+                }
+                // the mapping stays valid once the channel is closed
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.position(HEADER);
+                levels[level] = buffer.asIntBuffer();
+            }
+        }
+    }
+
+    /**
+     * Opens the pyramid of a picture, building it first if there is none. It
+     * does I/O and may decode the picture, so it has to be called from a
+     * background thread.
+     * @param source the picture file
+     * @param root the folder of the pyramids
+     * @param maxPyramids the number of pyramids kept in the folder: the least
+     * recently built are deleted
+     * @return the pyramid
+     * @throws IOException if the picture can't be decoded or the pyramid
+     * can't be written
+     */
+    public static TilePyramid open(File source, File root, int maxPyramids) throws IOException {
+        File directory = new File(root, ImageCache.hash(source.getAbsolutePath() + '|' +
+                source.length() + '|' + source.lastModified()));
+        TilePyramid pyramid = read(directory);
+        if (pyramid == null) {
+            build(source, directory);
+            prune(root, maxPyramids, directory);
+            pyramid = read(directory);
+            if (pyramid == null) {
+                throw new IOException("Error reading " + directory);
+            }
+        }
+        return pyramid;
+    }
+
+    /**
+     * @return the pyramid in the folder, or null if there is none or it is
+     * incomplete
+     */
+    private static TilePyramid read(File directory) {
+        File index = new File(directory, INDEX);
+        if (! index.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            if (in.readInt() != INDEX_VERSION) {
+                return null;
+            }
+            int count = in.readInt();
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int level = 0; level < count; level++) {
+                widths[level] = in.readInt();
+                heights[level] = in.readInt();
+            }
+            return new TilePyramid(directory, widths, heights);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void build(File source, File directory) throws IOException {
+        delete(directory);
+        if (! directory.mkdirs()) {
+            throw new IOException("Error creating " + directory);
+        }
+        Raster raster = decode(source);
+        int count = 1;
+        for (int w = raster.getWidth(), h = raster.getHeight(); w > TILE_SIZE || h > TILE_SIZE; count++) {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+        }
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int level = 0; level < count; level++) {
+            if (level > 0) {
+                raster = new ImagePipeline(ForkJoinPool.commonPool(), new ResizeStage(
+                        (raster.getWidth() + 1) / 2, (raster.getHeight() + 1) / 2)).process(raster);
+            }
+            widths[level] = raster.getWidth();
+            heights[level] = raster.getHeight();
+            write(raster, levelFile(directory, level));
+        }
+        // last, so an interrupted build is not taken for a complete one
+        File index = new File(directory, INDEX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(count);
+            for (int level = 0; level < count; level++) {
+                out.writeInt(widths[level]);
+                out.writeInt(heights[level]);
+            }
+        }
+    }
+
+    /**
+     * Decodes the picture at its own size, upright, releasing the image once
+     * its pixels are read
+     */
+    private static Raster decode(File source) throws IOException {
+        int orientation = ExifOrientation.read(source);
+        Image image = ImageLoader.decode(source.toURI().toString(), 0, 0);
+        if (image == null) {
+            throw new IOException("Error decoding " + source);
+        }
+        Raster raster = Raster.of(image);
+        image = null;
+        if (orientation != ExifOrientation.NORMAL) {
+            raster = new ImagePipeline(ForkJoinPool.commonPool(), new OrientationStage(orientation)).process(raster);
+        }
+        return raster;
+    }
+
+    private static void write(Raster raster, File file) throws IOException {
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        int[] pixels = raster.getPixels();
+        ByteBuffer buffer = ByteBuffer.allocate(4 * w * Math.min(h, WRITE_ROWS));
+        try (FileOutputStream out = new FileOutputStream(file);
+                FileChannel channel = out.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(w).putInt(h).flip();
+            channel.write(header);
+            for (int y = 0; y < h; y += WRITE_ROWS) {
+                int rows = Math.min(WRITE_ROWS, h - y);
+                buffer.clear();
+                buffer.asIntBuffer().put(pixels, y * w, rows * w);
+                buffer.limit(4 * rows * w);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    private static void prune(File root, int maxPyramids, File keep) {
+        File[] pyramids = root.listFiles(File::isDirectory);
+        if (pyramids == null || pyramids.length <= maxPyramids) {
+            return;
+        }
+        Arrays.sort(pyramids, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < pyramids.length - maxPyramids; i++) {
+            if (! pyramids[i].equals(keep)) {
+                delete(pyramids[i]);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File levelFile(File directory, int level) {
+        return new File(directory, level + ".argb");
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the width of the picture, upright
+     */
+    public int getWidth() {
+        return widths[0];
+    }
+
+    /**
+     * @return the height of the picture, upright
+     */
+    public int getHeight() {
+        return heights[0];
+    }
+
+    /**
+     * @return the number of levels, the first one at the size of the picture
+     */
+    public int getLevelCount() {
+        return widths.length;
+    }
+
+    public int getLevelWidth(int level) {
+        return widths[level];
+    }
+
+    public int getLevelHeight(int level) {
+        return heights[level];
+    }
+
+    public int getColumns(int level) {
+        return (widths[level] + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public int getRows(int level) {
+        return (heights[level] + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Reads a tile. Tiles on the right and bottom edges may be smaller than
+     * {@link #TILE_SIZE}. It can be called from any thread.
+     * @param level the level
+     * @param column the column of the tile
+     * @param row the row of the tile
+     * @return the tile
+     */
+    public WritableImage readTile(int level, int column, int row) {
+        int w = widths[level];
+        int x = column * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        int tw = Math.min(TILE_SIZE, w - x);
+        int th = Math.min(TILE_SIZE, heights[level] - y);
+        int[] pixels = new int[tw * th];
+        // a view per call, as the position of a buffer isn't thread safe
+        IntBuffer buffer = levels[level].duplicate();
+        for (int i = 0; i < th; i++) {
+            buffer.position((y + i) * w + x);
+            buffer.get(pixels, i * tw, tw);
+        }
+        WritableImage tile = new WritableImage(tw, th);
+        tile.getPixelWriter().setPixels(0, 0, tw, th, PixelFormat.getIntArgbInstance(), pixels, 0, tw);
+        return tile;
+    }
+}
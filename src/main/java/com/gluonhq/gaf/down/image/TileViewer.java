@@ -0,0 +1,476 @@
+package com.gluonhq.gaf.down.image;
+
+import com.gluonhq.charm.down.Services;
+import com.gluonhq.charm.down.plugins.StorageService;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.input.ZoomEvent;
+import javafx.scene.layout.Region;
+import javafx.stage.Window;
+
+/**
+ * Zoom and pan viewer for large pictures, that draws the tiles of a
+ * {@link TilePyramid}.
+ * <p>
+ * Only the tiles that intersect the view are drawn, from the coarsest level
+ * that has at least a pixel per pixel of the screen at the current zoom, so
+ * the pixels held don't depend on the resolution of the picture. The pixels
+ * of the screen are counted with the output scale of the window, so the
+ * finest level is shown sharp on high density screens. Tiles are
+ * read in the background and kept in a least recently used cache bounded in
+ * bytes; the coarsest level, a single tile, is drawn first so the tiles
+ * that aren't read yet show a blurred picture instead of a hole.
+ * <p>
+ * Gestures only change the zoom and the origin, and mark the view dirty: the
+ * tiles are drawn once per pulse, at layout, however many events come in.
+ */
+public class TileViewer extends Region {
+
+    private static final Logger LOG = Logger.getLogger(TileViewer.class.getName());
+
+    /**
+     * The largest zoom, in pixels of the screen per pixel of the picture
+     */
+    private static final double MAX_ZOOM = 2;
+    // the output scale of windows is JavaFX 9: with 8, screen pixels are
+    // taken as pixels of the view
+    private static final boolean OUTPUT_SCALE = hasOutputScale();
+    private static final long MAX_TILE_BYTES = 24 * 1024 * 1024;
+    private static final int MAX_PYRAMIDS = 4;
+
+    private final Canvas canvas = new Canvas();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tile-viewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final File directory;
+
+    private final LinkedHashMap<Long, Image> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<Long> pending = new HashSet<>();
+    private volatile Set<Long> wanted = Collections.emptySet();
+    private long tileBytes;
+
+    private volatile TilePyramid pyramid;
+    private File file;
+    private double zoom = 1;
+    private double originX, originY;
+    private boolean fitted = true;
+    private boolean dirty;
+    private double dragX, dragY;
+
+    private Scene scaleScene;
+    private Window scaleWindow;
+    private final InvalidationListener windowListener = observable -> updateWindow();
+    private final InvalidationListener scaleListener = observable -> markDirty();
+
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(this, "loading");
+
+    /**
+     * Creates a viewer that keeps the pyramids in the <code>tiles</code>
+     * folder of the private storage, or of the temporary folder if there is
+     * none
+     */
+    public TileViewer() {
+        this(Services.get(StorageService.class)
+                .flatMap(StorageService::getPrivateStorage)
+                .map(dir -> new File(dir, "tiles"))
+                .orElse(new File(System.getProperty("java.io.tmpdir"), "tiles")));
+    }
+
+    /**
+     * Creates a viewer
+     * @param directory the folder of the pyramids
+     */
+    public TileViewer(File directory) {
+        this.directory = directory;
+        getStyleClass().add("tile-viewer");
+        // sized to the viewer, not the other way around
+        canvas.setManaged(false);
+        getChildren().add(canvas);
+        sceneProperty().addListener(windowListener);
+
+        addEventHandler(ZoomEvent.ZOOM, e -> {
+            zoomBy(e.getZoomFactor(), e.getX(), e.getY());
+            e.consume();
+        });
+        addEventHandler(ScrollEvent.SCROLL, e -> {
+            if (e.getTouchCount() == 0 && ! e.isDirect() && ! e.isInertia() && e.getDeltaX() == 0) {
+                // a mouse wheel
+                zoomBy(Math.pow(1.005, e.getDeltaY()), e.getX(), e.getY());
+            } else {
+                panBy(e.getDeltaX(), e.getDeltaY());
+            }
+            e.consume();
+        });
+        // touch drags come as scroll events too
+        addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, e -> {
+            if (! e.isSynthesized()) {
+                panBy(e.getX() - dragX, e.getY() - dragY);
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+        });
+        addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                if (fitted) {
+                    zoomBy(MAX_ZOOM / getOutputScale() / zoom, e.getX(), e.getY());
+                } else {
+                    fit();
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows a picture: its pyramid is opened, or built, in the background,
+     * and {@link #loadingProperty() loading} is true in the meantime. It has
+     * to be called from the JavaFX Application Thread.
+     * @param file the picture file, or null to show nothing and release the
+     * tiles
+     */
+    public void show(File file) {
+        this.file = file;
+        setPyramid(null);
+        if (file == null) {
+            loading.set(false);
+            return;
+        }
+        loading.set(true);
+        executor.execute(() -> {
+            TilePyramid result = null;
+            try {
+                result = TilePyramid.open(file, directory, MAX_PYRAMIDS);
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Error opening the tiles of " + file, e);
+            }
+            TilePyramid opened = result;
+            Platform.runLater(() -> {
+                // unless another picture was shown since
+                if (file == this.file) {
+                    loading.set(false);
+                    setPyramid(opened);
+                }
+            });
+        });
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public TilePyramid getPyramid() {
+        return pyramid;
+    }
+
+    private void setPyramid(TilePyramid pyramid) {
+        this.pyramid = pyramid;
+        tiles.clear();
+        tileBytes = 0;
+        pending.clear();
+        wanted = Collections.emptySet();
+        fitted = true;
+        markDirty();
+    }
+
+    /**
+     * True while the pyramid of the picture is opened or built
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    public boolean isLoading() {
+        return loading.get();
+    }
+
+    /**
+     * @return the zoom, in pixels of the view per pixel of the picture
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Zooms keeping a point of the view in place
+     * @param factor the change of the zoom
+     * @param x the horizontal coordinate of the point, in the view
+     * @param y the vertical coordinate of the point, in the view
+     */
+    public void zoomBy(double factor, double x, double y) {
+        if (pyramid == null || factor <= 0) {
+            return;
+        }
+        double px = originX + x / zoom;
+        double py = originY + y / zoom;
+        zoom = clampZoom(zoom * factor);
+        originX = px - x / zoom;
+        originY = py - y / zoom;
+        fitted = false;
+        markDirty();
+    }
+
+    /**
+     * Moves the picture
+     * @param dx the horizontal distance, in pixels of the view
+     * @param dy the vertical distance, in pixels of the view
+     */
+    public void panBy(double dx, double dy) {
+        if (pyramid == null) {
+            return;
+        }
+        originX -= dx / zoom;
+        originY -= dy / zoom;
+        fitted = false;
+        markDirty();
+    }
+
+    /**
+     * Zooms to fit the whole picture in the view
+     */
+    public void fit() {
+        fitted = true;
+        markDirty();
+    }
+
+    private double fitZoom() {
+        TilePyramid p = pyramid;
+        return Math.min(getWidth() / p.getWidth(), getHeight() / p.getHeight());
+    }
+
+    private double clampZoom(double value) {
+        double min = fitZoom();
+        return Math.max(min, Math.min(Math.max(min, MAX_ZOOM / getOutputScale()), value));
+    }
+
+    private static boolean hasOutputScale() {
+        try {
+            Window.class.getMethod("outputScaleXProperty");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Follows the scene and the window of the viewer, to listen to the
+     * output scale of the window
+     */
+    private void updateWindow() {
+        if (! OUTPUT_SCALE) {
+            return;
+        }
+        Scene scene = getScene();
+        if (scene != scaleScene) {
+            if (scaleScene != null) {
+                scaleScene.windowProperty().removeListener(windowListener);
+            }
+            scaleScene = scene;
+            if (scene != null) {
+                scene.windowProperty().addListener(windowListener);
+            }
+        }
+        Window window = scene == null ? null : scene.getWindow();
+        if (window != scaleWindow) {
+            if (scaleWindow != null) {
+                scaleWindow.outputScaleXProperty().removeListener(scaleListener);
+                scaleWindow.outputScaleYProperty().removeListener(scaleListener);
+            }
+            scaleWindow = window;
+            if (window != null) {
+                window.outputScaleXProperty().addListener(scaleListener);
+                window.outputScaleYProperty().addListener(scaleListener);
+            }
+            markDirty();
+        }
+    }
+
+    /**
+     * @return the number of pixels of the screen per pixel of the view
+     */
+    private double getOutputScale() {
+        Window window = scaleWindow;
+        return window == null ? 1 : Math.max(1, Math.max(window.getOutputScaleX(), window.getOutputScaleY()));
+    }
+
+    /**
+     * Keeps the picture covering the view, or centered in it along the axes
+     * where it is smaller
+     */
+    private double clampOrigin(double origin, double size, double view) {
+        double visible = view / zoom;
+        if (visible >= size) {
+            return (size - visible) / 2;
+        }
+        return Math.max(0, Math.min(size - visible, origin));
+    }
+
+    private void markDirty() {
+        dirty = true;
+        requestLayout();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double w = getWidth();
+        double h = getHeight();
+        if (canvas.getWidth() != w || canvas.getHeight() != h) {
+            canvas.setWidth(w);
+            canvas.setHeight(h);
+            dirty = true;
+        }
+        if (dirty) {
+            dirty = false;
+            draw();
+        }
+    }
+
+    private void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        TilePyramid p = pyramid;
+        if (p == null || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        zoom = fitted ? fitZoom() : clampZoom(zoom);
+        originX = clampOrigin(originX, p.getWidth(), getWidth());
+        originY = clampOrigin(originY, p.getHeight(), getHeight());
+
+        // the coarsest level with at least a pixel per pixel of the screen
+        double screenZoom = zoom * getOutputScale();
+        int level = 0;
+        while (level + 1 < p.getLevelCount() &&
+                (double) p.getLevelWidth(level + 1) / p.getWidth() >= screenZoom) {
+            level++;
+        }
+        Set<Long> visible = new HashSet<>();
+        List<Long> missing = new ArrayList<>();
+        int top = p.getLevelCount() - 1;
+        drawLevel(g, p, top, visible, missing);
+        if (level != top) {
+            drawLevel(g, p, level, visible, missing);
+        }
+        // before the reads are queued, or they would skip their tiles
+        wanted = visible;
+        for (long key : missing) {
+            request(p, key);
+        }
+    }
+
+    private void drawLevel(GraphicsContext g, TilePyramid p, int level, Set<Long> visible, List<Long> missing) {
+        // pixels of the level per pixel of the picture
+        double scale = (double) p.getLevelWidth(level) / p.getWidth();
+        double size = TilePyramid.TILE_SIZE / scale;
+        int c0 = Math.max(0, (int) Math.floor(originX / size));
+        int r0 = Math.max(0, (int) Math.floor(originY / size));
+        int c1 = Math.min(p.getColumns(level) - 1, (int) Math.floor((originX + getWidth() / zoom) / size));
+        int r1 = Math.min(p.getRows(level) - 1, (int) Math.floor((originY + getHeight() / zoom) / size));
+        for (int row = r0; row <= r1; row++) {
+            for (int column = c0; column <= c1; column++) {
+                long key = (long) level << 42 | (long) row << 21 | column;
+                visible.add(key);
+                Image tile = tiles.get(key);
+                if (tile == null) {
+                    missing.add(key);
+                    continue;
+                }
+                // snapped to whole pixels, so adjacent tiles leave no seams
+                double x = Math.floor((column * size - originX) * zoom);
+                double y = Math.floor((row * size - originY) * zoom);
+                double right = Math.floor((column * size + tile.getWidth() / scale - originX) * zoom);
+                double bottom = Math.floor((row * size + tile.getHeight() / scale - originY) * zoom);
+                g.drawImage(tile, x, y, right - x, bottom - y);
+            }
+        }
+    }
+
+    /**
+     * Reads a tile in the background, unless it is being read. Tiles that
+     * have left the view by the time their turn comes are skipped, and
+     * requested again by the next draw if they are back in the view.
+     */
+    private void request(TilePyramid p, long key) {
+        if (! pending.add(key)) {
+            return;
+        }
+        int level = (int) (key >>> 42);
+        int row = (int) (key >>> 21) & 0x1fffff;
+        int column = (int) key & 0x1fffff;
+        executor.execute(() -> {
+            boolean skipped = p != pyramid || ! wanted.contains(key);
+            Image result = skipped ? null : p.readTile(level, column, row);
+            Platform.runLater(() -> {
+                if (p != pyramid) {
+                    return;
+                }
+                pending.remove(key);
+                if (result != null) {
+                    put(key, result);
+                    markDirty();
+                } else if (skipped && wanted.contains(key)) {
+                    markDirty();
+                }
+            });
+        });
+    }
+
+    private void put(long key, Image tile) {
+        tiles.put(key, tile);
+        tileBytes += bytes(tile);
+        Iterator<Map.Entry<Long, Image>> eldest = tiles.entrySet().iterator();
+        while (tileBytes > MAX_TILE_BYTES && eldest.hasNext()) {
+            Map.Entry<Long, Image> e = eldest.next();
+            if (e.getKey() == key) {
+                break;
+            }
+            tileBytes -= bytes(e.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long bytes(Image image) {
+        return 4L * (long) image.getWidth() * (long) image.getHeight();
+    }
+
+    /**
+     * @return the bytes of the tiles held
+     */
+    public long getTileBytes() {
+        return tileBytes;
+    }
+
+    /**
+     * Stops the background thread. The viewer can't show pictures after.
+     */
+    public void dispose() {
+        show(null);
+        executor.shutdownNow();
+    }
+}
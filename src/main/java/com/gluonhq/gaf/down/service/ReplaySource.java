@@ -0,0 +1,101 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.gaf.down.data.SampleQueue;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Replays the readings of one type from a {@link SensorRecording}.
+ * <p>
+ * The values are loaded into a primitive array once, and returned in order,
+ * at the rate of the simulated sensor, starting again from the first one
+ * when the end is reached if looping.
+ */
+public final class ReplaySource implements SampleSource {
+
+    private final int channels;
+    private final double[] values;
+    private final int count;
+    private final double recordedRate;
+    private final boolean loop;
+    private int index;
+
+    /**
+     * Loads the readings of a recording
+     * @param recording the recording
+     * @param type the type of the readings, like {@link SensorRecorder#ACCELERATION}
+     * @param channels the number of values of each reading, up to 3
+     * @param loop true to start again when the end is reached
+     * @throws IOException if the recording can't be read
+     */
+    public ReplaySource(SensorRecording recording, int type, int channels, boolean loop) throws IOException {
+        this.channels = channels;
+        this.loop = loop;
+        Loader loader = new Loader(type);
+        recording.read(loader);
+        this.values = loader.data;
+        this.count = loader.count;
+        this.recordedRate = count > 1 && loader.last > loader.first ?
+                (count - 1) * 1000.0 / (loader.last - loader.first) : 0;
+    }
+
+    /**
+     * @return the number of readings
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the average rate of the readings when they were recorded, in Hz,
+     * or 0 if unknown
+     */
+    public double getRecordedRate() {
+        return recordedRate;
+    }
+
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public boolean next(long time, double[] out) {
+        if (index == count) {
+            if (! loop || count == 0) {
+                return false;
+            }
+            index = 0;
+        }
+        System.arraycopy(values, index * channels, out, 0, channels);
+        index++;
+        return true;
+    }
+
+    private final class Loader implements SampleQueue.Sink {
+
+        private final int type;
+        private double[] data = new double[1024 * channels];
+        private int count;
+        private long first = Long.MAX_VALUE;
+        private long last = Long.MIN_VALUE;
+
+        Loader(int type) {
+            this.type = type;
+        }
+
+        @Override
+        public void accept(int t, long timestamp, double[] v, int offset) {
+            if (t != type) {
+                return;
+            }
+            if ((count + 1) * channels > data.length) {
+                data = Arrays.copyOf(data, 2 * data.length);
+            }
+            System.arraycopy(v, offset, data, count * channels, channels);
+            count++;
+            first = Math.min(first, timestamp);
+            last = Math.max(last, timestamp);
+        }
+    }
+}
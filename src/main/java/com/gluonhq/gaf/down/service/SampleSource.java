@@ -0,0 +1,21 @@
+package com.gluonhq.gaf.down.service;
+
+/**
+ * Source of the values of a simulated sensor
+ */
+public interface SampleSource {
+
+    /**
+     * @return the number of values of each sample
+     */
+    int getChannels();
+
+    /**
+     * Reads the next sample
+     * @param time the time of the sample, in nanoseconds since the simulation
+     * started
+     * @param values receives the values of the sample
+     * @return false if there are no more samples
+     */
+    boolean next(long time, double[] values);
+}
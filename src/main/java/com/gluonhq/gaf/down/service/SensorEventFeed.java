@@ -0,0 +1,87 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.format.ZoneOffsetCache;
+import com.gluonhq.gaf.down.dsp.EventDetector;
+import com.gluonhq.gaf.down.dsp.SensorEvent;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Observable feed of the events detected on the acceleration stream, shared
+ * by all the views.
+ * <p>
+ * Like {@link SensorStatistics}, the detector is fed from a single
+ * subscription to the stream, while at least one user has acquired the feed.
+ * The most recent events are kept in an observable list, updated on the
+ * JavaFX Application Thread, and only events allocate.
+ */
+public final class SensorEventFeed {
+
+    /**
+     * The maximum number of events in {@link #getEvents()}
+     */
+    public static final int MAX_EVENTS = 100;
+
+    public static final SensorEventFeed ACCELERATION = new SensorEventFeed();
+
+    private final EventDetector detector = new EventDetector();
+    private final ObservableList<SensorEvent> events = FXCollections.observableArrayList();
+    private final ObservableList<SensorEvent> unmodifiableEvents = FXCollections.unmodifiableObservableList(events);
+    private final ReadOnlyLongWrapper stepCount = new ReadOnlyLongWrapper(this, "stepCount");
+    private final SharedSubscription subscription = new SharedSubscription(
+            () -> SensorStream.ACCELERATION.subscribe(a ->
+                    detector.process(ZoneOffsetCache.toEpochMillis(a.getTimestamp()), a.getX(), a.getY(), a.getZ())),
+            () -> {
+                detector.reset();
+                stepCount.set(0);
+            });
+
+    private SensorEventFeed() {
+        detector.setListener(this::onEvent);
+    }
+
+    /**
+     * Starts detecting events, if it wasn't already
+     * @return the subscription, that has to be released when the events
+     * are no longer needed
+     */
+    public SensorStream.Subscription acquire() {
+        return subscription.acquire();
+    }
+
+    /**
+     * @return the detector, to change its thresholds
+     */
+    public EventDetector getDetector() {
+        return detector;
+    }
+
+    /**
+     * @return the most recent events, oldest first
+     */
+    public ObservableList<SensorEvent> getEvents() {
+        return unmodifiableEvents;
+    }
+
+    /**
+     * The number of steps detected since the feed was last acquired
+     */
+    public ReadOnlyLongProperty stepCountProperty() {
+        return stepCount.getReadOnlyProperty();
+    }
+    public long getStepCount() {
+        return stepCount.get();
+    }
+
+    private void onEvent(SensorEvent.Type type, long timestamp, double value) {
+        if (events.size() >= MAX_EVENTS) {
+            events.remove(0);
+        }
+        events.add(new SensorEvent(type, timestamp, value));
+        if (type == SensorEvent.Type.STEP) {
+            stepCount.set(detector.getStepCount());
+        }
+    }
+}
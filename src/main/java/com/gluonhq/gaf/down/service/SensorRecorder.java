@@ -0,0 +1,348 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.Services;
+import com.gluonhq.charm.down.plugins.StorageService;
+import com.gluonhq.format.ZoneOffsetCache;
+import com.gluonhq.gaf.down.data.SampleQueue;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+/**
+ * Records the readings of the accelerometer, the compass and the magnetometer
+ * to binary files.
+ * <p>
+ * The readings are queued on the JavaFX Application Thread, and a background
+ * thread appends them as fixed width records to memory mapped segment files.
+ * When a segment is full, a new one is started. Nothing is allocated per
+ * reading, and the JavaFX Application Thread never waits for the disk: if the
+ * writer falls behind and the queue fills up, readings are dropped and counted.
+ * <p>
+ * Segment layout, big endian:
+ * <pre>
+ * header, {@value #HEADER_SIZE} bytes:
+ *   int magic, int version, int record size, int segment index,
+ *   long session start (epoch millis), long committed record count
+ * records, {@value #RECORD_SIZE} bytes each:
+ *   long timestamp (epoch millis), int type, int reserved,
+ *   double x, double y, double z
+ * </pre>
+ * The committed record count is updated after every batch of records, so
+ * after a crash a reader only has to ignore whatever follows the committed
+ * records. The mapped pages are forced to the storage every second.
+ */
+public final class SensorRecorder {
+
+    private static final Logger LOG = Logger.getLogger(SensorRecorder.class.getName());
+
+    /** Record type of an acceleration: x, y, z in m/s&#178; */
+    public static final int ACCELERATION = 1;
+    /** Record type of a compass heading: x in degrees */
+    public static final int HEADING = 2;
+    /** Record type of a magnetometer reading: x, y, z in &#181;T */
+    public static final int MAGNETOMETER = 3;
+
+    public static final int MAGIC = 0x47534E53; // GSNS
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 40;
+    public static final int COUNT_OFFSET = 24;
+    public static final String EXTENSION = ".bin";
+
+    public static final long DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 512;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long FORCE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final File directory;
+    private final List<SensorStream.Subscription> subscriptions = new ArrayList<>();
+    private final ReadOnlyBooleanWrapper recording = new ReadOnlyBooleanWrapper(this, "recording");
+
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private volatile Session session;
+    private long lastStart;
+
+    /**
+     * Creates a recorder that writes to the <code>recordings</code> folder
+     * of the private storage
+     */
+    public SensorRecorder() {
+        this(Services.get(StorageService.class)
+                .flatMap(StorageService::getPrivateStorage)
+                .map(dir -> new File(dir, "recordings"))
+                .orElse(null));
+    }
+
+    /**
+     * Creates a recorder
+     * @param directory the folder where the segments are created
+     */
+    public SensorRecorder(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the maximum size of a segment file, in bytes
+     */
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the maximum size of the segment files, applied to the next recording
+     * @param segmentSize the size in bytes
+     */
+    public void setSegmentSize(long segmentSize) {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    public ReadOnlyBooleanProperty recordingProperty() {
+        return recording.getReadOnlyProperty();
+    }
+
+    public boolean isRecording() {
+        return recording.get();
+    }
+
+    /**
+     * Starts a new recording session, listening to all the available sensors.
+     * If writing fails, the session is stopped and {@link #getError()} returns
+     * the error. Has to be called from the JavaFX Application Thread.
+     */
+    public void start() {
+        if (isRecording()) {
+            return;
+        }
+        if (directory == null) {
+            throw new IllegalStateException("There is no storage to record to");
+        }
+        if (! directory.isDirectory() && ! directory.mkdirs()) {
+            throw new IllegalStateException("Error creating " + directory);
+        }
+        // the start names the segments, so it has to be unique in the folder,
+        // even for sessions started within the same millisecond
+        long start = Math.max(System.currentTimeMillis(), lastStart + 1);
+        while (new File(directory, segmentName(start, 0)).exists()) {
+            start++;
+        }
+        lastStart = start;
+        Session s = new Session(start, segmentSize);
+        session = s;
+        s.thread.start();
+        subscriptions.add(SensorStream.ACCELERATION.subscribe(a ->
+                s.queue.offer(ACCELERATION, ZoneOffsetCache.toEpochMillis(a.getTimestamp()),
+                        a.getX(), a.getY(), a.getZ())));
+        subscriptions.add(SensorStream.HEADING.subscribe(h ->
+                s.queue.offer(HEADING, System.currentTimeMillis(), h.doubleValue(), 0, 0)));
+        subscriptions.add(SensorStream.MAGNETOMETER.subscribe(m ->
+                s.queue.offer(MAGNETOMETER, System.currentTimeMillis(), m.getX(), m.getY(), m.getZ())));
+        recording.set(true);
+    }
+
+    /**
+     * Stops listening to the sensors. The background thread writes the
+     * readings still queued and closes the last segment, without blocking
+     * the caller. Has to be called from the JavaFX Application Thread.
+     */
+    public void stop() {
+        if (! isRecording()) {
+            return;
+        }
+        for (SensorStream.Subscription subscription : subscriptions) {
+            subscription.release();
+        }
+        subscriptions.clear();
+        session.finish();
+        recording.set(false);
+    }
+
+    /**
+     * Queues a reading that doesn't come from the sensor streams. Has to be
+     * called from the JavaFX Application Thread, while recording.
+     * @return false if not recording or if the reading was dropped
+     */
+    public boolean record(int type, long timestamp, double x, double y, double z) {
+        Session s = session;
+        return s != null && s.running && s.queue.offer(type, timestamp, x, y, z);
+    }
+
+    /**
+     * @return the number of records written by the current or last session
+     */
+    public long getRecordCount() {
+        Session s = session;
+        return s == null ? 0 : s.written;
+    }
+
+    /**
+     * @return the number of readings dropped by the current or last session
+     */
+    public long getDroppedCount() {
+        Session s = session;
+        return s == null ? 0 : s.queue.getDropped();
+    }
+
+    /**
+     * @return the segment of the current or last session being written
+     */
+    public File getCurrentFile() {
+        Session s = session;
+        return s == null ? null : s.file;
+    }
+
+    /**
+     * @return the error that stopped the writer of the current or last
+     * session, if any
+     */
+    public IOException getError() {
+        Session s = session;
+        return s == null ? null : s.error;
+    }
+
+    /**
+     * @param start the session start, in epoch millis, unique in the folder
+     * @param index the index of the segment in the session
+     * @return the name of a segment file
+     */
+    public static String segmentName(long start, int index) {
+        return "sensors-" + start + "-" + index + EXTENSION;
+    }
+
+    private final class Session implements Runnable, SampleQueue.Sink {
+
+        private final long start;
+        private final int segmentRecords;
+        private final SampleQueue queue = new SampleQueue(3, QUEUE_CAPACITY);
+        private final Thread thread;
+
+        private volatile boolean running = true;
+        private volatile long written;
+        private volatile File file;
+        private volatile IOException error;
+
+        private int segmentIndex = -1;
+        private RandomAccessFile raf;
+        private MappedByteBuffer buffer;
+        private int count;
+
+        Session(long start, long segmentSize) {
+            this.start = start;
+            this.segmentRecords = (int) ((segmentSize - HEADER_SIZE) / RECORD_SIZE);
+            this.thread = new Thread(this, "sensor-recorder");
+            this.thread.setDaemon(true);
+        }
+
+        void finish() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            long lastForce = System.nanoTime();
+            long total = 0;
+            try {
+                while (running || queue.size() > 0) {
+                    int n = queue.drain(this, BATCH_SIZE);
+                    if (n > 0) {
+                        total += n;
+                        buffer.putLong(COUNT_OFFSET, count);
+                        written = total;
+                    } else if (running) {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    }
+                    long now = System.nanoTime();
+                    if (buffer != null && now - lastForce > FORCE_INTERVAL) {
+                        buffer.force();
+                        lastForce = now;
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+                LOG.log(Level.WARNING, "Error recording to " + file, error);
+                // nothing drains the queue any more
+                Platform.runLater(() -> {
+                    if (session == this) {
+                        stop();
+                    }
+                });
+            } finally {
+                running = false;
+                closeSegment();
+            }
+        }
+
+        @Override
+        public void accept(int type, long timestamp, double[] values, int offset) {
+            if (buffer == null || count == segmentRecords) {
+                try {
+                    nextSegment();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            buffer.putLong(timestamp)
+                    .putInt(type)
+                    .putInt(0)
+                    .putDouble(values[offset])
+                    .putDouble(values[offset + 1])
+                    .putDouble(values[offset + 2]);
+            count++;
+        }
+
+        private void nextSegment() throws IOException {
+            closeSegment();
+            segmentIndex++;
+            File f = new File(directory, segmentName(start, segmentIndex));
+            raf = new RandomAccessFile(f, "rw");
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) segmentRecords * RECORD_SIZE);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(RECORD_SIZE)
+                    .putInt(segmentIndex)
+                    .putLong(start)
+                    .putLong(0);
+            count = 0;
+            file = f;
+        }
+
+        private void closeSegment() {
+            if (buffer != null) {
+                buffer.putLong(COUNT_OFFSET, count);
+                buffer.force();
+                // the mapping itself is released when the buffer is collected
+                buffer = null;
+            }
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Error closing " + file, e);
+                }
+                raf = null;
+            }
+        }
+    }
+}
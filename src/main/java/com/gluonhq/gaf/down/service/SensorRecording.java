@@ -0,0 +1,120 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.gaf.down.data.SampleQueue;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A recording session written by {@link SensorRecorder}: the segment files
+ * that share the same session start, in order.
+ */
+public final class SensorRecording {
+
+    private final long start;
+    private final List<File> segments;
+
+    private SensorRecording(long start, List<File> segments) {
+        this.start = start;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Finds the recordings in a folder
+     * @param directory the folder
+     * @return the recordings, oldest first
+     */
+    public static List<SensorRecording> list(File directory) {
+        Map<Long, List<File>> sessions = new TreeMap<>();
+        File[] files = directory == null ? null : directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (! name.startsWith("sensors-") || ! name.endsWith(SensorRecorder.EXTENSION)) {
+                    continue;
+                }
+                String[] parts = name.substring(0, name.length() - SensorRecorder.EXTENSION.length()).split("-");
+                try {
+                    long start = Long.parseLong(parts[1]);
+                    Integer.parseInt(parts[2]);
+                    sessions.computeIfAbsent(start, s -> new ArrayList<>()).add(file);
+                } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        List<SensorRecording> recordings = new ArrayList<>();
+        for (Map.Entry<Long, List<File>> session : sessions.entrySet()) {
+            List<File> segments = session.getValue();
+            segments.sort(Comparator.comparingInt(SensorRecording::segmentIndex));
+            recordings.add(new SensorRecording(session.getKey(), segments));
+        }
+        return recordings;
+    }
+
+    private static int segmentIndex(File file) {
+        String name = file.getName();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1,
+                name.length() - SensorRecorder.EXTENSION.length()));
+    }
+
+    /**
+     * @return the start of the session, in epoch millis
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public List<File> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Reads the committed records of all the segments, in order. A segment
+     * with an invalid header stops the reading with an exception, once the
+     * records of the previous segments have been passed to the sink.
+     * @param sink receives the type, the timestamp and the three values of
+     * each record
+     * @return the number of records read
+     * @throws IOException if a segment can't be read or is not valid
+     */
+    public long read(SampleQueue.Sink sink) throws IOException {
+        double[] values = new double[3];
+        long total = 0;
+        for (File segment : segments) {
+            try (RandomAccessFile raf = new RandomAccessFile(segment, "r")) {
+                FileChannel channel = raf.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.limit() < SensorRecorder.HEADER_SIZE
+                        || buffer.getInt(0) != SensorRecorder.MAGIC
+                        || buffer.getInt(4) != SensorRecorder.VERSION
+                        || buffer.getInt(8) != SensorRecorder.RECORD_SIZE) {
+                    throw new IOException("Not a valid segment: " + segment);
+                }
+                // records after the committed count may be incomplete
+                long count = Math.min(buffer.getLong(SensorRecorder.COUNT_OFFSET),
+                        (buffer.limit() - SensorRecorder.HEADER_SIZE) / SensorRecorder.RECORD_SIZE);
+                buffer.position(SensorRecorder.HEADER_SIZE);
+                for (long i = 0; i < count; i++) {
+                    long timestamp = buffer.getLong();
+                    int type = buffer.getInt();
+                    buffer.getInt();
+                    values[0] = buffer.getDouble();
+                    values[1] = buffer.getDouble();
+                    values[2] = buffer.getDouble();
+                    sink.accept(type, timestamp, values, 0);
+                }
+                total += count;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,132 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.plugins.Acceleration;
+import com.gluonhq.charm.down.plugins.MagnetometerReading;
+import com.gluonhq.format.ZoneOffsetCache;
+import com.gluonhq.gaf.down.dsp.RollingStatistics;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rolling statistics of the readings of a sensor stream, over windows of 1,
+ * 10 and 60 seconds, shared by all the views.
+ * <p>
+ * The statistics are updated from a single subscription to the stream, while
+ * at least one user has acquired them, so views and the recorder can read
+ * them at any time without computing them again. Acquiring, releasing and
+ * reading has to be done from the JavaFX Application Thread.
+ *
+ * @param <T> the type of the readings
+ */
+public final class SensorStatistics<T> {
+
+    private static final Logger LOG = Logger.getLogger(SensorStatistics.class.getName());
+
+    /**
+     * The spans of the windows, in milliseconds
+     */
+    public static final long[] WINDOWS = {1_000, 10_000, 60_000};
+
+    /**
+     * The rate of the readings, in Hz, the windows are sized for at first.
+     * They grow to fit the actual rate.
+     */
+    public static final int INITIAL_RATE = 200;
+
+    /**
+     * The highest rate of the readings, in Hz. At higher rates, the windows
+     * keep only the most recent <code>window * MAX_RATE</code> readings, and
+     * a warning is logged.
+     */
+    public static final int MAX_RATE = 2000;
+
+    public static final SensorStatistics<Acceleration> ACCELERATION =
+            new SensorStatistics<>(SensorStream.ACCELERATION, 3, (a, values) -> {
+                values[0] = a.getX();
+                values[1] = a.getY();
+                values[2] = a.getZ();
+                return ZoneOffsetCache.toEpochMillis(a.getTimestamp());
+            });
+
+    public static final SensorStatistics<MagnetometerReading> MAGNETOMETER =
+            new SensorStatistics<>(SensorStream.MAGNETOMETER, 3, (m, values) -> {
+                values[0] = m.getX();
+                values[1] = m.getY();
+                values[2] = m.getZ();
+                return System.currentTimeMillis();
+            });
+
+    private final SensorStream<?, T> stream;
+    private final Reader<? super T> reader;
+    private final RollingStatistics[] windows;
+    private final double[] values;
+    private final SharedSubscription subscription;
+    private boolean truncated;
+
+    private SensorStatistics(SensorStream<?, T> stream, int channels, Reader<? super T> reader) {
+        this.stream = stream;
+        this.reader = reader;
+        this.values = new double[channels];
+        this.subscription = new SharedSubscription(() -> stream.subscribe(this::add), this::clear);
+        this.windows = new RollingStatistics[WINDOWS.length];
+        for (int i = 0; i < WINDOWS.length; i++) {
+            windows[i] = new RollingStatistics(channels, WINDOWS[i],
+                    (int) (WINDOWS[i] * INITIAL_RATE / 1000), (int) (WINDOWS[i] * MAX_RATE / 1000));
+        }
+    }
+
+    /**
+     * Starts updating the statistics, if they weren't already
+     * @return the subscription, that has to be released when the statistics
+     * are no longer needed
+     */
+    public SensorStream.Subscription acquire() {
+        return subscription.acquire();
+    }
+
+    /**
+     * @param index the index of the window in {@link #WINDOWS}
+     * @return the statistics over that window
+     */
+    public RollingStatistics getWindow(int index) {
+        return windows[index];
+    }
+
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    /**
+     * Removes all the readings from the windows
+     */
+    public void clear() {
+        for (RollingStatistics window : windows) {
+            window.clear();
+        }
+    }
+
+    private void add(T reading) {
+        long timestamp = reader.read(reading, values);
+        for (RollingStatistics window : windows) {
+            window.add(timestamp, values);
+        }
+        if (! truncated && windows[0].getTruncated() > 0) {
+            truncated = true;
+            LOG.log(Level.WARNING, "Readings above {0} Hz, the statistics cover less than their windows", MAX_RATE);
+        }
+    }
+
+    /**
+     * Reads the values of a reading
+     */
+    @FunctionalInterface
+    private interface Reader<T> {
+
+        /**
+         * @param reading the reading
+         * @param values receives the values, one per channel
+         * @return the time of the reading, in milliseconds
+         */
+        long read(T reading, double[] values);
+    }
+}
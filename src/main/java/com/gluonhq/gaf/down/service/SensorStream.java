@@ -0,0 +1,159 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.Services;
+import com.gluonhq.charm.down.plugins.Acceleration;
+import com.gluonhq.charm.down.plugins.AccelerometerService;
+import com.gluonhq.charm.down.plugins.CompassService;
+import com.gluonhq.charm.down.plugins.MagnetometerReading;
+import com.gluonhq.charm.down.plugins.MagnetometerService;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ObservableValue;
+
+/**
+ * Reference counted access to the stream of readings of a sensor service.
+ * <p>
+ * There is one stream per service type. Whatever the number of subscribers,
+ * a stream adds a single listener to the property of its service, when the
+ * first subscriber arrives, and removes it when the last one leaves, so views
+ * can subscribe when they are shown and release when they are hidden, without
+ * piling up listeners.
+ * <p>
+ * Subscribing and releasing has to be done from the JavaFX Application Thread.
+ *
+ * @param <S> the type of the service
+ * @param <T> the type of the readings
+ */
+public final class SensorStream<S, T> {
+
+    public static final SensorStream<AccelerometerService, Acceleration> ACCELERATION =
+            new SensorStream<>(AccelerometerService.class, AccelerometerService::accelerationProperty);
+
+    public static final SensorStream<CompassService, Number> HEADING =
+            new SensorStream<>(CompassService.class, CompassService::headingProperty);
+
+    public static final SensorStream<MagnetometerService, MagnetometerReading> MAGNETOMETER =
+            new SensorStream<>(MagnetometerService.class, MagnetometerService::readingProperty);
+
+    private final Class<S> serviceType;
+    private final Function<S, ObservableValue<T>> propertyFunction;
+    private final InvalidationListener listener = o -> dispatch();
+
+    private ObservableValue<T> property;
+    @SuppressWarnings("unchecked")
+    private Consumer<? super T>[] consumers = new Consumer[0];
+
+    private SensorStream(Class<S> serviceType, Function<S, ? extends ObservableValue<T>> propertyFunction) {
+        this.serviceType = serviceType;
+        this.propertyFunction = s -> propertyFunction.apply(s);
+    }
+
+    public Class<S> getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * @return true if the service is available on this platform
+     */
+    public boolean isAvailable() {
+        return Services.get(serviceType).isPresent();
+    }
+
+    /**
+     * @return the number of active subscriptions
+     */
+    public int getSubscriberCount() {
+        return consumers.length;
+    }
+
+    /**
+     * Subscribes to the readings of the service. If the service is not
+     * available, the subscription does nothing.
+     * @param consumer called with every new reading
+     * @return the subscription, that has to be released when the readings
+     * are no longer needed
+     */
+    public Subscription subscribe(Consumer<? super T> consumer) {
+        Subscription subscription = new ConsumerSubscription(consumer);
+        if (consumers.length == 0) {
+            if (property == null) {
+                property = Services.get(serviceType).map(propertyFunction).orElse(null);
+            }
+            if (property != null) {
+                property.addListener(listener);
+            }
+        }
+        Consumer<? super T>[] copy = Arrays.copyOf(consumers, consumers.length + 1);
+        copy[consumers.length] = consumer;
+        consumers = copy;
+        return subscription;
+    }
+
+    private void release(Consumer<? super T> consumer) {
+        for (int i = 0; i < consumers.length; i++) {
+            if (consumers[i] == consumer) {
+                @SuppressWarnings("unchecked")
+                Consumer<? super T>[] copy = new Consumer[consumers.length - 1];
+                System.arraycopy(consumers, 0, copy, 0, i);
+                System.arraycopy(consumers, i + 1, copy, i, consumers.length - i - 1);
+                consumers = copy;
+                break;
+            }
+        }
+        if (consumers.length == 0 && property != null) {
+            property.removeListener(listener);
+        }
+    }
+
+    private void dispatch() {
+        T value = property.getValue();
+        if (value == null) {
+            return;
+        }
+        // the array is replaced, never modified, on subscribe and release
+        Consumer<? super T>[] current = consumers;
+        for (Consumer<? super T> consumer : current) {
+            consumer.accept(value);
+        }
+    }
+
+    /**
+     * A subscription to a sensor stream
+     */
+    public interface Subscription {
+
+        /**
+         * Stops the readings. Calling it more than once has no effect.
+         */
+        void release();
+
+        /**
+         * @return true until the subscription is released
+         */
+        boolean isActive();
+    }
+
+    private final class ConsumerSubscription implements Subscription {
+
+        private Consumer<? super T> consumer;
+
+        private ConsumerSubscription(Consumer<? super T> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void release() {
+            if (consumer != null) {
+                SensorStream.this.release(consumer);
+                consumer = null;
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            return consumer != null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.gluonhq.gaf.down.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Reference counted subscription to a {@link SensorStream}, shared by the
+ * users of something computed from its readings, like the statistics and the
+ * event feed.
+ * <p>
+ * The stream is subscribed when the first user acquires it, and released,
+ * with a callback to reset what was computed, when the last user releases
+ * it. Acquiring and releasing has to be done from the JavaFX Application
+ * Thread.
+ */
+final class SharedSubscription {
+
+    private final Supplier<SensorStream.Subscription> subscriber;
+    private final Runnable onReleased;
+    private SensorStream.Subscription subscription;
+    private int users;
+
+    /**
+     * @param subscriber subscribes to the stream, for the first user
+     * @param onReleased called once the last user has released it
+     */
+    SharedSubscription(Supplier<SensorStream.Subscription> subscriber, Runnable onReleased) {
+        this.subscriber = subscriber;
+        this.onReleased = onReleased;
+    }
+
+    /**
+     * @return the subscription of a user, that has to be released when it
+     * no longer needs the readings
+     */
+    SensorStream.Subscription acquire() {
+        if (users++ == 0) {
+            subscription = subscriber.get();
+        }
+        return new UserSubscription();
+    }
+
+    private void release() {
+        if (--users == 0) {
+            subscription.release();
+            subscription = null;
+            onReleased.run();
+        }
+    }
+
+    private final class UserSubscription implements SensorStream.Subscription {
+
+        private boolean active = true;
+
+        @Override
+        public void release() {
+            if (active) {
+                active = false;
+                SharedSubscription.this.release();
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.plugins.Acceleration;
+import com.gluonhq.charm.down.plugins.AccelerometerService;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+
+/**
+ * Accelerometer that publishes simulated or replayed accelerations
+ */
+public class SimulatedAccelerometerService extends SimulatedSensor implements AccelerometerService {
+
+    private final ReadOnlyObjectWrapper<Acceleration> acceleration = new ReadOnlyObjectWrapper<>();
+
+    /**
+     * @param source the x, y and z values, in m/s&#178;
+     * @param rate the number of accelerations per second
+     */
+    public SimulatedAccelerometerService(SampleSource source, double rate) {
+        super(source, rate);
+    }
+
+    @Override
+    public Acceleration getCurrentAcceleration() {
+        return acceleration.get();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Acceleration> accelerationProperty() {
+        return acceleration.getReadOnlyProperty();
+    }
+
+    @Override
+    protected void publish(long epochMillis, double[] values) {
+        acceleration.set(new Acceleration(values[0], values[1], values[2], toLocalDateTime(epochMillis)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.plugins.CompassService;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+
+/**
+ * Compass that publishes simulated or replayed headings
+ */
+public class SimulatedCompassService extends SimulatedSensor implements CompassService {
+
+    private final ReadOnlyDoubleWrapper heading = new ReadOnlyDoubleWrapper();
+
+    /**
+     * @param source the heading, in degrees, in the first value. It is
+     * wrapped to [0, 360)
+     * @param rate the number of headings per second
+     */
+    public SimulatedCompassService(SampleSource source, double rate) {
+        super(source, rate);
+    }
+
+    @Override
+    public double getHeading() {
+        return heading.get();
+    }
+
+    @Override
+    public ReadOnlyDoubleProperty headingProperty() {
+        return heading.getReadOnlyProperty();
+    }
+
+    @Override
+    protected void publish(long epochMillis, double[] values) {
+        double h = values[0] % 360;
+        heading.set(h < 0 ? h + 360 : h);
+    }
+}
@@ -0,0 +1,41 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.plugins.MagnetometerReading;
+import com.gluonhq.charm.down.plugins.MagnetometerService;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+
+/**
+ * Magnetometer that publishes simulated or replayed readings. Only the field
+ * and its magnitude are simulated: yaw, pitch and roll are 0.
+ */
+public class SimulatedMagnetometerService extends SimulatedSensor implements MagnetometerService {
+
+    private final ReadOnlyObjectWrapper<MagnetometerReading> reading = new ReadOnlyObjectWrapper<>();
+
+    /**
+     * @param source the x, y and z values, in &#181;T
+     * @param rate the number of readings per second
+     */
+    public SimulatedMagnetometerService(SampleSource source, double rate) {
+        super(source, rate);
+    }
+
+    @Override
+    public MagnetometerReading getReading() {
+        return reading.get();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<MagnetometerReading> readingProperty() {
+        return reading.getReadOnlyProperty();
+    }
+
+    @Override
+    protected void publish(long epochMillis, double[] values) {
+        double x = values[0];
+        double y = values[1];
+        double z = values[2];
+        reading.set(new MagnetometerReading(x, y, z, Math.sqrt(x * x + y * y + z * z), 0, 0, 0));
+    }
+}
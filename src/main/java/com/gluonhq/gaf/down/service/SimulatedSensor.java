@@ -0,0 +1,148 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.format.ZoneOffsetCache;
+import java.time.LocalDateTime;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Base class of the simulated sensor services, that publish the samples of a
+ * {@link SampleSource} at a fixed rate.
+ * <p>
+ * The samples are published from {@link #advance(long)}, that catches up
+ * with all the samples due at the given time, so rates above the frame rate
+ * publish several samples per pulse. Once started, a timer calls it on every
+ * pulse; without the timer, for instance in a benchmark, it can be called
+ * directly, with any clock.
+ */
+public abstract class SimulatedSensor {
+
+    private final SampleSource source;
+    private final double[] values;
+    private final double rate;
+    private final long maxBacklog;
+
+    private AnimationTimer timer;
+    private long startNanos = -1;
+    private long startMillis;
+    private long emitted;
+    private boolean finished;
+
+    /**
+     * @param source the values of the samples
+     * @param rate the number of samples per second
+     */
+    protected SimulatedSensor(SampleSource source, double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+        this.source = source;
+        this.values = new double[Math.max(3, source.getChannels())];
+        this.rate = rate;
+        // after a long pause, like a breakpoint, skip samples instead of
+        // publishing more than a quarter of a second in one go
+        this.maxBacklog = Math.max(1, (long) (rate / 4));
+    }
+
+    /**
+     * @return the number of samples per second
+     */
+    public final double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return the number of samples published
+     */
+    public final long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * @return true if the source has no more samples
+     */
+    public final boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Starts publishing samples on every pulse
+     */
+    public void start() {
+        if (! Platform.isFxApplicationThread()) {
+            Platform.runLater(this::start);
+            return;
+        }
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    advance(now);
+                }
+            };
+        }
+        timer.start();
+    }
+
+    /**
+     * Stops publishing samples
+     */
+    public void stop() {
+        if (! Platform.isFxApplicationThread()) {
+            Platform.runLater(this::stop);
+            return;
+        }
+        if (timer != null) {
+            timer.stop();
+        }
+        startNanos = -1;
+    }
+
+    /**
+     * Publishes the samples due at the given time. The first call sets the
+     * start of the simulation, when the first sample is published.
+     * @param now the current time, in nanoseconds
+     * @return the number of samples published
+     */
+    public final int advance(long now) {
+        if (finished) {
+            return 0;
+        }
+        if (startNanos < 0) {
+            startNanos = now - (long) (emitted * 1e9 / rate);
+            startMillis = System.currentTimeMillis() - (long) (emitted * 1e3 / rate);
+        }
+        long due = (long) ((now - startNanos) * rate / 1e9) + 1;
+        if (due - emitted > maxBacklog) {
+            emitted = due - maxBacklog;
+        }
+        int n = 0;
+        while (emitted < due) {
+            long time = (long) (emitted * 1e9 / rate);
+            if (! source.next(time, values)) {
+                finished = true;
+                break;
+            }
+            publish(startMillis + time / 1_000_000, values);
+            emitted++;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Sets the value of the service property
+     * @param epochMillis the time of the sample
+     * @param values the values of the sample
+     */
+    protected abstract void publish(long epochMillis, double[] values);
+
+    /**
+     * @return the local date time in the default time zone of the given instant
+     */
+    protected static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                (int) Math.floorMod(epochMillis, 1000) * 1_000_000,
+                ZoneOffsetCache.getOffset(epochMillis));
+    }
+}
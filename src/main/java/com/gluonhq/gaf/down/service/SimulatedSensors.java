@@ -0,0 +1,153 @@
+package com.gluonhq.gaf.down.service;
+
+import com.gluonhq.charm.down.ServiceFactory;
+import com.gluonhq.charm.down.Services;
+import com.gluonhq.charm.down.plugins.AccelerometerService;
+import com.gluonhq.charm.down.plugins.CompassService;
+import com.gluonhq.charm.down.plugins.MagnetometerService;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registers simulated accelerometer, compass and magnetometer services, so
+ * the sensor views can be used and measured where there are no sensors, like
+ * on desktop.
+ * <p>
+ * The simulation is selected with system properties:
+ * <ul>
+ * <li><code>gaf.sensors</code>: <code>synthetic</code> or <code>replay</code>.
+ * If not set, nothing is registered</li>
+ * <li><code>gaf.sensors.rate</code>: samples per second, by default 100, or
+ * the rate of the recording when replaying</li>
+ * <li><code>gaf.sensors.waveform</code>: <code>sine</code>, <code>noise</code>
+ * or <code>step</code>, for synthetic signals</li>
+ * <li><code>gaf.sensors.replay</code>: the folder of the recordings to replay,
+ * the recorder folder by default. The newest recording is replayed in a loop</li>
+ * </ul>
+ */
+public final class SimulatedSensors {
+
+    private static final Logger LOG = Logger.getLogger(SimulatedSensors.class.getName());
+
+    private SimulatedSensors() {
+    }
+
+    /**
+     * Registers and starts the simulated services requested by the system
+     * properties. Has to be called before the services are used.
+     * @return true if the services were registered
+     */
+    public static boolean install() {
+        String mode = System.getProperty("gaf.sensors");
+        if (mode == null) {
+            return false;
+        }
+        double rate = 0;
+        String rateProperty = System.getProperty("gaf.sensors.rate");
+        if (rateProperty != null) {
+            try {
+                rate = Double.parseDouble(rateProperty);
+            } catch (NumberFormatException e) {
+                LOG.log(Level.WARNING, "Invalid sensor rate: {0}, using the default", rateProperty);
+            }
+        }
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "synthetic":
+                SyntheticSource.Waveform waveform = SyntheticSource.Waveform.SINE;
+                String waveformProperty = System.getProperty("gaf.sensors.waveform");
+                if (waveformProperty != null) {
+                    try {
+                        waveform = SyntheticSource.Waveform.valueOf(waveformProperty.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        LOG.log(Level.WARNING, "Unknown waveform: {0}, using {1}",
+                                new Object[] {waveformProperty, waveform});
+                    }
+                }
+                installSynthetic(waveform, rate > 0 ? rate : 100);
+                return true;
+            case "replay":
+                String folder = System.getProperty("gaf.sensors.replay");
+                File directory = folder != null ? new File(folder) : new SensorRecorder().getDirectory();
+                List<SensorRecording> recordings = SensorRecording.list(directory);
+                if (recordings.isEmpty()) {
+                    LOG.log(Level.WARNING, "No recordings to replay in {0}", directory);
+                    return false;
+                }
+                try {
+                    installReplay(recordings.get(recordings.size() - 1), rate);
+                    return true;
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Error reading recording", e);
+                    return false;
+                }
+            default:
+                LOG.log(Level.WARNING, "Unknown sensor simulation: {0}", mode);
+                return false;
+        }
+    }
+
+    /**
+     * Registers and starts services that generate synthetic signals
+     * @param waveform the waveform of all the signals
+     * @param rate the number of samples per second
+     */
+    public static void installSynthetic(SyntheticSource.Waveform waveform, double rate) {
+        install(AccelerometerService.class, new SimulatedAccelerometerService(
+                new SyntheticSource(3, waveform, 5, 1, 0, 1), rate));
+        install(CompassService.class, new SimulatedCompassService(
+                new SyntheticSource(1, waveform, 90, 0.1, 180, 2), rate));
+        install(MagnetometerService.class, new SimulatedMagnetometerService(
+                new SyntheticSource(3, waveform, 30, 0.2, 0, 3), rate));
+    }
+
+    /**
+     * Registers and starts services that replay a recording in a loop. Only
+     * the types of readings found in the recording are registered.
+     * @param recording the recording
+     * @param rate the number of samples per second, or 0 to use the rate of
+     * the recording
+     * @throws IOException if the recording can't be read
+     */
+    public static void installReplay(SensorRecording recording, double rate) throws IOException {
+        ReplaySource accel = new ReplaySource(recording, SensorRecorder.ACCELERATION, 3, true);
+        if (accel.size() > 0) {
+            install(AccelerometerService.class, new SimulatedAccelerometerService(accel, replayRate(accel, rate)));
+        }
+        ReplaySource heading = new ReplaySource(recording, SensorRecorder.HEADING, 1, true);
+        if (heading.size() > 0) {
+            install(CompassService.class, new SimulatedCompassService(heading, replayRate(heading, rate)));
+        }
+        ReplaySource magnetometer = new ReplaySource(recording, SensorRecorder.MAGNETOMETER, 3, true);
+        if (magnetometer.size() > 0) {
+            install(MagnetometerService.class, new SimulatedMagnetometerService(magnetometer, replayRate(magnetometer, rate)));
+        }
+    }
+
+    private static double replayRate(ReplaySource source, double rate) {
+        if (rate > 0) {
+            return rate;
+        }
+        return source.getRecordedRate() > 0 ? source.getRecordedRate() : 100;
+    }
+
+    private static <T> void install(Class<T> serviceType, SimulatedSensor sensor) {
+        T service = serviceType.cast(sensor);
+        Services.registerServiceFactory(new ServiceFactory<T>() {
+            @Override
+            public Class<T> getServiceType() {
+                return serviceType;
+            }
+
+            @Override
+            public Optional<T> getInstance() {
+                return Optional.of(service);
+            }
+        });
+        sensor.start();
+    }
+}
@@ -0,0 +1,86 @@
+package com.gluonhq.gaf.down.service;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic signals, with one waveform per channel.
+ * <p>
+ * The values only depend on the time of each sample and on the seed of the
+ * noise, so a simulation driven with the same times is reproducible.
+ */
+public final class SyntheticSource implements SampleSource {
+
+    public enum Waveform {
+        /** offset + amplitude * sin(2 pi f t) */
+        SINE,
+        /** offset + amplitude * gaussian noise */
+        NOISE,
+        /** offset + or - amplitude, switching every half period */
+        STEP
+    }
+
+    private final Waveform[] waveforms;
+    private final double[] amplitudes;
+    private final double[] frequencies;
+    private final double[] offsets;
+    private final Random random;
+
+    /**
+     * Creates a source of signals with the same waveform in every channel,
+     * shifting the phase of each channel by a third of the period
+     * @param channels the number of channels
+     * @param waveform the waveform
+     * @param amplitude the amplitude
+     * @param frequency the frequency, in Hz
+     * @param offset the value the signal oscillates around
+     * @param seed the seed of the noise
+     */
+    public SyntheticSource(int channels, Waveform waveform, double amplitude, double frequency,
+            double offset, long seed) {
+        this.waveforms = new Waveform[channels];
+        this.amplitudes = new double[channels];
+        this.frequencies = new double[channels];
+        this.offsets = new double[channels];
+        this.random = new Random(seed);
+        for (int i = 0; i < channels; i++) {
+            setChannel(i, waveform, amplitude, frequency, offset);
+        }
+    }
+
+    /**
+     * Changes the signal of one channel
+     */
+    public void setChannel(int channel, Waveform waveform, double amplitude, double frequency, double offset) {
+        waveforms[channel] = waveform;
+        amplitudes[channel] = amplitude;
+        frequencies[channel] = frequency;
+        offsets[channel] = offset;
+    }
+
+    @Override
+    public int getChannels() {
+        return waveforms.length;
+    }
+
+    @Override
+    public boolean next(long time, double[] values) {
+        double seconds = time / 1e9;
+        for (int i = 0; i < waveforms.length; i++) {
+            double phase = frequencies[i] * seconds + (double) i / waveforms.length;
+            double v;
+            switch (waveforms[i]) {
+                case SINE:
+                    v = Math.sin(2 * Math.PI * phase);
+                    break;
+                case NOISE:
+                    v = random.nextGaussian();
+                    break;
+                default:
+                    v = phase - Math.floor(phase) < 0.5 ? 1 : -1;
+                    break;
+            }
+            values[i] = offsets[i] + amplitudes[i] * v;
+        }
+        return true;
+    }
+}
@@ -1,21 +1,33 @@
 package com.gluonhq.gaf.down.views;
 
-import com.gluonhq.charm.down.Services;
-import com.gluonhq.charm.down.plugins.AccelerometerService;
+import com.gluonhq.charm.down.plugins.Acceleration;
 import com.gluonhq.charm.glisten.afterburner.GluonPresenter;
 import com.gluonhq.charm.glisten.control.AppBar;
 import com.gluonhq.charm.glisten.mvc.View;
 import com.gluonhq.charm.glisten.visual.MaterialDesignIcon;
+import com.gluonhq.format.CharFormatter;
+import com.gluonhq.format.DecimalStringCache;
+import com.gluonhq.format.ZoneOffsetCache;
 import com.gluonhq.gaf.down.GluonGAfDown;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import com.gluonhq.gaf.down.chart.StreamingChart;
+import com.gluonhq.gaf.down.data.SampleBuffer;
+import com.gluonhq.gaf.down.data.SampleFlusher;
+import com.gluonhq.gaf.down.dsp.FilterChain;
+import com.gluonhq.gaf.down.dsp.FilterPipeline;
+import com.gluonhq.gaf.down.dsp.GravityFilter;
+import com.gluonhq.gaf.down.dsp.LowPassFilter;
+import com.gluonhq.gaf.down.dsp.RollingStatistics;
+import com.gluonhq.gaf.down.dsp.SensorEvent;
+import com.gluonhq.gaf.down.service.SensorEventFeed;
+import com.gluonhq.gaf.down.service.SensorRecorder;
+import com.gluonhq.gaf.down.service.SensorStatistics;
+import com.gluonhq.gaf.down.service.SensorStream;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
+import javafx.scene.paint.Color;
 import javafx.util.StringConverter;
 
 public class AccelPresenter extends GluonPresenter<GluonGAfDown> {
@@ -33,18 +45,38 @@ public class AccelPresenter extends GluonPresenter<GluonGAfDown> {
     private Label Z;
 
     @FXML
-    private NumberAxis xAxis;
+    private Label XStats;
 
     @FXML
-    private NumberAxis yAxis;
-    
+    private Label YStats;
+
+    @FXML
+    private Label ZStats;
+
     @FXML
-    private LineChart<Number, Number> chart;
+    private StreamingChart chart;
     
-    private final int maxSize = 300;
-    private XYChart.Series<Number, Number> xSeries;
-    private XYChart.Series<Number, Number> ySeries;
-    private XYChart.Series<Number, Number> zSeries;
+    private final int maxSize = 3000;
+    private final SampleBuffer buffer = new SampleBuffer(3, maxSize);
+    private final SampleBuffer filtered = new SampleBuffer(3, maxSize);
+    // linear acceleration, without gravity and high frequency noise
+    private final FilterPipeline pipeline = new FilterPipeline(3, 4096, 
+            new FilterChain(new GravityFilter(3, 0.3, false), new LowPassFilter(3, 5)));
+    private boolean showFiltered;
+    private final SampleFlusher flusher = new SampleFlusher(buffer, this::flush);
+    private final CharFormatter xText = new CharFormatter();
+    private final CharFormatter yText = new CharFormatter();
+    private final CharFormatter zText = new CharFormatter();
+    private final SensorRecorder recorder = new SensorRecorder();
+    private SensorStream.Subscription subscription;
+    private SensorStream.Subscription statisticsSubscription;
+    private SensorStream.Subscription eventSubscription;
+    private int statisticsWindow;
+    private final CharFormatter[] statisticsText = {
+            new CharFormatter(), new CharFormatter(), new CharFormatter()};
+    private final DecimalStringCache thresholdText = new DecimalStringCache(1, null, null, 64);
+    private final DecimalStringCache impactText = new DecimalStringCache(1, "Impact ", null, 64);
+    private final CharFormatter stepText = new CharFormatter();
     
     public void initialize() {
         accel.showingProperty().addListener((obs, oldValue, newValue) -> {
@@ -53,19 +85,46 @@ public class AccelPresenter extends GluonPresenter<GluonGAfDown> {
                 appBar.setNavIcon(MaterialDesignIcon.MENU.button(e -> 
                         getApp().getDrawer().open()));
                 appBar.setTitleText(AppViewManager.ACCEL_VIEW.getTitle());
+                appBar.getActionItems().add(recordButton());
+                appBar.getActionItems().add(MaterialDesignIcon.FILTER_LIST.button(e -> 
+                        showFiltered(! showFiltered)));
+                for (int i = 0; i < SensorStatistics.WINDOWS.length; i++) {
+                    int index = i;
+                    MenuItem item = new MenuItem("Statistics: " + SensorStatistics.WINDOWS[i] / 1000 + " s");
+                    item.setOnAction(e -> statisticsWindow = index);
+                    appBar.getMenuItems().add(item);
+                }
                 
-                run();
+                pipeline.start();
+                subscription = SensorStream.ACCELERATION.subscribe(this::addSample);
+                statisticsSubscription = SensorStatistics.ACCELERATION.acquire();
+                eventSubscription = SensorEventFeed.ACCELERATION.acquire();
+                flusher.start();
+            } else {
+                flusher.stop();
+                pipeline.stop();
+                if (subscription != null) {
+                    subscription.release();
+                    subscription = null;
+                }
+                if (statisticsSubscription != null) {
+                    statisticsSubscription.release();
+                    statisticsSubscription = null;
+                }
+                if (eventSubscription != null) {
+                    eventSubscription.release();
+                    eventSubscription = null;
+                }
             }
         });
         
-        xAxis.setAutoRanging(true);
-        xAxis.setForceZeroInRange(false);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss:SSS");
-        xAxis.setTickLabelFormatter(new StringConverter<Number>(){
+        CharFormatter formatter = new CharFormatter();
+        chart.setTickLabelFormatter(new StringConverter<Number>(){
 
+            // HH:mm:ss:SSS
             @Override
             public String toString(Number t) {
-                return formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(t.longValue()), ZoneId.systemDefault()));
+                return formatter.clear().appendTime(t.longValue()).toString();
             }
 
             @Override
@@ -75,42 +134,119 @@ public class AccelPresenter extends GluonPresenter<GluonGAfDown> {
 
         });
 
-        xSeries = new XYChart.Series<>();
-        ySeries = new XYChart.Series<>();
-        zSeries = new XYChart.Series<>();
-        xSeries.setName("X-Axis");
-        ySeries.setName("Y-Axis");
-        zSeries.setName("Z-Axis");
         chart.setTitle("Accelerometer");
-        chart.getData().addAll(xSeries, ySeries, zSeries);
+        chart.getSeriesNames().setAll("X-Axis", "Y-Axis", "Z-Axis");
+        chart.setBuffer(buffer);
+        
+        // the recorder also stops by itself, if writing fails
+        recorder.recordingProperty().addListener((obs, oldValue, newValue) -> {
+            if (accel.isShowing()) {
+                getApp().getAppBar().getActionItems().set(0, recordButton());
+            }
+        });
+        
+        SensorEventFeed.ACCELERATION.getEvents().addListener((ListChangeListener<SensorEvent>) c -> {
+            while (c.next()) {
+                for (SensorEvent event : c.getAddedSubList()) {
+                    addMarker(event);
+                }
+            }
+        });
+    }
+    
+    private void addSample(Acceleration acceleration) {
+        long time = ZoneOffsetCache.toEpochMillis(acceleration.getTimestamp());
+        buffer.add(time, acceleration.getX(), acceleration.getY(), acceleration.getZ());
+        pipeline.offer(time, acceleration.getX(), acceleration.getY(), acceleration.getZ());
+    }
+    
+    /**
+     * Annotates the chart with an event, and removes the markers that have 
+     * left the time window
+     */
+    private void addMarker(SensorEvent event) {
+        long from = event.getTimestamp() - (long) chart.getTimeWindow();
+        chart.getMarkers().removeIf(m -> m.getTime() < from);
+        switch (event.getType()) {
+            case THRESHOLD:
+                chart.getMarkers().add(new StreamingChart.Marker(event.getTimestamp(), 
+                        thresholdText.get(event.getValue()), Color.GRAY));
+                break;
+            case SHAKE:
+                chart.getMarkers().add(new StreamingChart.Marker(event.getTimestamp(), "Shake", Color.web("#9a42c8")));
+                break;
+            case STEP:
+                chart.getMarkers().add(new StreamingChart.Marker(event.getTimestamp(), 
+                        stepText.clear().append("Step ").append((long) event.getValue()).toString(),
+                        Color.web("#4258c9")));
+                break;
+            case IMPACT:
+                chart.getMarkers().add(new StreamingChart.Marker(event.getTimestamp(), 
+                        impactText.get(event.getValue()), Color.RED));
+                break;
+        }
+    }
+    
+    private void showFiltered(boolean value) {
+        showFiltered = value;
+        chart.setTitle(value ? "Linear acceleration" : "Accelerometer");
+        chart.setBuffer(value ? filtered : buffer);
+    }
+    
+    /**
+     * The recorder keeps recording when the view is hidden, until it is 
+     * stopped from this button
+     */
+    private Button recordButton() {
+        MaterialDesignIcon icon = recorder.isRecording() ? 
+                MaterialDesignIcon.STOP : MaterialDesignIcon.FIBER_MANUAL_RECORD;
+        Button button = icon.button(e -> {
+            if (recorder.isRecording()) {
+                recorder.stop();
+            } else {
+                recorder.start();
+            }
+        });
+        button.setDisable(recorder.getDirectory() == null);
+        return button;
+    }
+    
+    /**
+     * Called once per pulse, if there are new samples: the labels show the 
+     * most recent one and the statistics of the raw samples, and the chart 
+     * draws all of them. The filtered samples ready by then are moved to their 
+     * buffer.
+     */
+    private void flush() {
+        pipeline.drainTo(filtered);
+        SampleBuffer shown = showFiltered ? filtered : buffer;
+        if (shown.isEmpty()) {
+            return;
+        }
+        int last = shown.size() - 1;
+        X.setText(xText.clear().append("X: ").append(shown.getValue(0, last), 4).append(" m/s\u00b2").toString());
+        Y.setText(yText.clear().append("Y: ").append(shown.getValue(1, last), 4).append(" m/s\u00b2").toString());
+        Z.setText(zText.clear().append("Z: ").append(shown.getValue(2, last), 4).append(" m/s\u00b2").toString());
+        RollingStatistics statistics = SensorStatistics.ACCELERATION.getWindow(statisticsWindow);
+        XStats.setText(statisticsText(statistics, 0));
+        YStats.setText(statisticsText(statistics, 1));
+        ZStats.setText(statisticsText(statistics, 2));
+        chart.refresh();
     }
     
-    private void run() {
-        Services.get(AccelerometerService.class)
-            .ifPresent(a -> {
-                a.accelerationProperty().addListener((obs, ov, nv) -> {
-                    if (nv != null) {
-                        X.setText(String.format("X: %.4f m/s\u00b2", nv.getX()));
-                        Y.setText(String.format("Y: %.4f m/s\u00b2", nv.getY()));
-                        Z.setText(String.format("Z: %.4f m/s\u00b2", nv.getZ()));
-                    } 
-                });
-                a.accelerationProperty().addListener((obs, n, n1) -> {
-                    long time = n1.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-                    xSeries.getData().add(new XYChart.Data<>(time, n1.getX()));
-                    if (xSeries.getData().size() > maxSize) {
-                        xSeries.getData().remove(0);
-                    }
-                    ySeries.getData().add(new XYChart.Data<>(time, n1.getY()));
-                    if (ySeries.getData().size() > maxSize) {
-                        ySeries.getData().remove(0);
-                    }
-                    zSeries.getData().add(new XYChart.Data<>(time, n1.getZ()));
-                    if (zSeries.getData().size() > maxSize) {
-                        zSeries.getData().remove(0);
-                    }
-                });
-            });
+    private String statisticsText(RollingStatistics statistics, int axis) {
+        CharFormatter text = statisticsText[axis].clear()
+                .append(statistics.getWindow() / 1000).append(" s, ")
+                .append(statistics.getCount()).append(" samples");
+        if (statistics.getCount() > 0) {
+            text.append("\nmean ").append(statistics.getMean(axis), 3)
+                    .append(", rms ").append(statistics.getRms(axis), 3)
+                    .append(", \u03c3 ").append(statistics.getStandardDeviation(axis), 3)
+                    .append("\nmin ").append(statistics.getMin(axis), 3)
+                    .append(", max ").append(statistics.getMax(axis), 3)
+                    .append(", p-p ").append(statistics.getPeakToPeak(axis), 3);
+        }
+        return text.toString();
     }
     
     
@@ -20,8 +20,10 @@ public class AppViewManager {
 
     public static final AppView MAIN_VIEW = view("Main", MainPresenter.class, MaterialDesignIcon.HOME, SHOW_IN_DRAWER, HOME_VIEW, SKIP_VIEW_STACK);
     public static final AppView PICTURES_VIEW = view("Pictures", PicturesPresenter.class, MaterialDesignIcon.PHOTO_ALBUM, SHOW_IN_DRAWER);
+    public static final AppView GALLERY_VIEW = view("Gallery", GalleryPresenter.class, MaterialDesignIcon.PHOTO_LIBRARY, SHOW_IN_DRAWER);
     public static final AppView COMPASS_VIEW = view("Compass", CompassPresenter.class, MaterialDesignIcon.DIRECTIONS, SHOW_IN_DRAWER);
     public static final AppView ACCEL_VIEW = view("Accelerometer", AccelPresenter.class, MaterialDesignIcon.LEAK_ADD, SHOW_IN_DRAWER);
+    public static final AppView SPECTRUM_VIEW = view("Spectrum", SpectrumPresenter.class, MaterialDesignIcon.GRAPHIC_EQ, SHOW_IN_DRAWER);
     
     private static AppView view(String title, Class<? extends GluonPresenter<?>> presenterClass, MaterialDesignIcon menuIcon, AppView.Flag... flags ) {
         return REGISTRY.createView(name(presenterClass), title, presenterClass, menuIcon, flags);
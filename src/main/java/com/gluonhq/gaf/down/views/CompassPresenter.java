@@ -1,14 +1,17 @@
 package com.gluonhq.gaf.down.views;
 
-import com.gluonhq.charm.down.Services;
-import com.gluonhq.charm.down.plugins.CompassService;
 import com.gluonhq.charm.glisten.afterburner.GluonPresenter;
 import com.gluonhq.charm.glisten.control.AppBar;
 import com.gluonhq.charm.glisten.mvc.View;
 import com.gluonhq.charm.glisten.visual.MaterialDesignIcon;
 import com.gluonhq.control.roundslider.Knob;
+import com.gluonhq.control.roundslider.KnobMetrics;
+import com.gluonhq.format.CharFormatter;
+import com.gluonhq.format.DecimalStringCache;
 import com.gluonhq.gaf.down.GluonGAfDown;
-import javafx.beans.binding.Bindings;
+import com.gluonhq.gaf.down.dsp.HeadingFilter;
+import com.gluonhq.gaf.down.service.SensorStream;
+import javafx.animation.AnimationTimer;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.util.StringConverter;
@@ -24,6 +27,29 @@ public class CompassPresenter extends GluonPresenter<GluonGAfDown> {
     @FXML
     private Knob knob;
     
+    @FXML
+    private Label metrics;
+    
+    private final DecimalStringCache headingText = new DecimalStringCache(1, null, "\u00b0", 4096);
+    private final DecimalStringCache tickText = new DecimalStringCache(1, null, null, 64);
+    // a quarter of a second, and the precision of the label
+    private final HeadingFilter headingFilter = new HeadingFilter(0.25, 0.1);
+    private SensorStream.Subscription subscription;
+    private final CharFormatter metricsText = new CharFormatter();
+    
+    // refreshes the metrics overlay twice per second
+    private final AnimationTimer metricsTimer = new AnimationTimer() {
+        private long last;
+        
+        @Override
+        public void handle(long now) {
+            if (now - last >= 500_000_000L) {
+                last = now;
+                updateMetrics();
+            }
+        }
+    };
+    
     public void initialize() {
         compassView.showingProperty().addListener((obs, oldValue, newValue) -> {
             if (newValue) {
@@ -31,16 +57,23 @@ public class CompassPresenter extends GluonPresenter<GluonGAfDown> {
                 appBar.setNavIcon(MaterialDesignIcon.MENU.button(e -> 
                         getApp().getDrawer().open()));
                 appBar.setTitleText(AppViewManager.COMPASS_VIEW.getTitle());
+                appBar.getActionItems().add(MaterialDesignIcon.BUG_REPORT.button(e -> 
+                        showMetrics(! metrics.isVisible())));
                 
-                run();
+                headingFilter.reset();
+                subscription = SensorStream.HEADING.subscribe(this::updateHeading);
+                if (metrics.isVisible()) {
+                    metricsTimer.start();
+                }
+            } else {
+                metricsTimer.stop();
+                if (subscription != null) {
+                    subscription.release();
+                    subscription = null;
+                }
             }
         });
         
-        compassView.setOnHidden(e -> {
-            knob.rotateProperty().unbind();
-            label.textProperty().unbind();
-        });
-        
         knob.setLabelFormatter(new StringConverter<Double>() {
             @Override
             public String toString(Double val) {
@@ -53,7 +86,7 @@ public class CompassPresenter extends GluonPresenter<GluonGAfDown> {
                 } else if (val == 270) {
                     return "W";
                 }
-                return String.format("%.1f", val);
+                return tickText.get(val);
             }
 
             @Override
@@ -65,11 +98,51 @@ public class CompassPresenter extends GluonPresenter<GluonGAfDown> {
         label.setText("0\u00b0");
     }
     
-    private void run() {
-        Services.get(CompassService.class).ifPresent(c -> {
-            knob.rotateProperty().bind(c.headingProperty().multiply(-1).add(360));
-            label.textProperty().bind(Bindings.format("%.1f\u00b0", c.headingProperty()));
-        });
+    /**
+     * The debug overlay shows the rendering metrics of the knob, that are 
+     * only timed while it is visible
+     */
+    private void showMetrics(boolean value) {
+        metrics.setVisible(value);
+        knob.getMetrics().setEnabled(value);
+        if (value) {
+            updateMetrics();
+            metricsTimer.start();
+        } else {
+            metricsTimer.stop();
+        }
+    }
+    
+    private void updateMetrics() {
+        KnobMetrics m = knob.getMetrics();
+        metricsText.clear()
+                .append("value changes  ").append(m.getValueInvalidations())
+                .append("\nlayouts        ").append(m.getLayouts())
+                .append("\nresizes        ").append(m.getResizes())
+                .append(", mean ").append(m.getResizeTimes().getMean() / 1000.0, 1).append(" \u00b5s")
+                .append("\ntick updates   ").append(m.getTickUpdates())
+                .append("\ntick redraws   ").append(m.getTickRedraws())
+                .append(", mean ").append(m.getRedrawTimes().getMean() / 1000.0, 1).append(" \u00b5s")
+                .append(", p95 ").append(m.getRedrawTimes().getPercentile(95) / 1000.0, 1).append(" \u00b5s")
+                .append("\nrotations      ").append(m.getRotationUpdates())
+                .append("\ndrag           ").append(m.getDragEvents()).append(" events, ")
+                .append(m.getDragAdjustments()).append(" adjustments")
+                .append("\ntick cache     ").append(KnobMetrics.getCacheHits()).append(" hits, ")
+                .append(KnobMetrics.getCacheMisses()).append(" misses, ")
+                .append(KnobMetrics.getCacheBytes() / 1024).append(" KB");
+        metrics.setText(metricsText.toString());
+    }
+    
+    /**
+     * The knob and the label are only updated when the smoothed heading 
+     * changes visibly. The knob follows the unwrapped heading, so it doesn't 
+     * spin around when the heading crosses north.
+     */
+    private void updateHeading(Number heading) {
+        if (headingFilter.update(System.currentTimeMillis(), heading.doubleValue())) {
+            knob.setRotate(360 - headingFilter.getUnwrappedHeading());
+            label.setText(headingText.get(headingFilter.getHeading()));
+        }
     }
     
 }
@@ -0,0 +1,194 @@
+package com.gluonhq.gaf.down.views;
+
+import com.gluonhq.charm.glisten.afterburner.GluonPresenter;
+import com.gluonhq.charm.glisten.control.AppBar;
+import com.gluonhq.charm.glisten.mvc.View;
+import com.gluonhq.charm.glisten.visual.MaterialDesignIcon;
+import com.gluonhq.gaf.down.GluonGAfDown;
+import com.gluonhq.gaf.down.image.ImageCache;
+import com.gluonhq.gaf.down.image.ImageLoader;
+import com.gluonhq.gaf.down.image.PictureLibrary;
+import com.gluonhq.gaf.down.image.ThumbnailLoader;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.beans.Observable;
+import javafx.beans.binding.Bindings;
+import javafx.fxml.FXML;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+
+/**
+ * Grid of the thumbnails of the pictures of the device.
+ * <p>
+ * The grid is a list view of rows, so only the rows on screen have cells,
+ * and cells are reused as it scrolls: each cell holds a fixed set of tiles,
+ * and a tile cancels its request when it is given another picture.
+ */
+public class GalleryPresenter extends GluonPresenter<GluonGAfDown> {
+
+    private static final double MIN_TILE_SIZE = 110;
+    private static final double GAP = 2;
+    // room for the vertical scroll bar, on desktop
+    private static final double SCROLL_BAR = 16;
+
+    @FXML
+    private View gallery;
+
+    @FXML
+    private ListView<Row> grid;
+
+    private final PictureLibrary library = PictureLibrary.DEVICE;
+    private final ThumbnailLoader loader = new ThumbnailLoader(ImageCache.PICTURES, 2);
+    private final Label placeholder = new Label();
+    private double tileSize = MIN_TILE_SIZE;
+
+    public void initialize() {
+        gallery.showingProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue) {
+                AppBar appBar = getApp().getAppBar();
+                appBar.setNavIcon(MaterialDesignIcon.MENU.button(e ->
+                        getApp().getDrawer().open()));
+                appBar.setTitleText(AppViewManager.GALLERY_VIEW.getTitle());
+                appBar.getActionItems().add(MaterialDesignIcon.REFRESH.button(e -> library.scan()));
+                if (library.getPictures().isEmpty()) {
+                    library.scan();
+                }
+            }
+        });
+
+        placeholder.textProperty().bind(Bindings.when(library.scanningProperty())
+                .then("Looking for pictures...").otherwise("No pictures"));
+        grid.setPlaceholder(placeholder);
+        grid.setCellFactory(list -> new RowCell());
+        grid.widthProperty().addListener((Observable o) -> updateRows());
+        library.getPictures().addListener((Observable o) -> updateRows());
+    }
+
+    /**
+     * Splits the pictures in rows that fill the width of the grid. The rows
+     * are new items, so all the cells show their pictures again.
+     */
+    private void updateRows() {
+        double width = grid.getWidth() - grid.snappedLeftInset() - grid.snappedRightInset() - SCROLL_BAR;
+        int columns = Math.max(1, (int) (width / MIN_TILE_SIZE));
+        tileSize = Math.max(1, Math.floor(width / columns));
+        grid.setFixedCellSize(tileSize);
+
+        int count = library.getPictures().size();
+        List<Row> rows = new ArrayList<>((count + columns - 1) / columns);
+        for (int first = 0; first < count; first += columns) {
+            rows.add(new Row(first, Math.min(columns, count - first)));
+        }
+        grid.getItems().setAll(rows);
+    }
+
+    /**
+     * Selects a picture, that the pictures view shows when it is shown
+     */
+    private void open(File file) {
+        library.setSelected(file);
+        AppViewManager.PICTURES_VIEW.switchView();
+    }
+
+    /**
+     * A row of the grid: a range of pictures. Rows have no equality, so a
+     * new row is always a change for the cell that shows it.
+     */
+    private static final class Row {
+
+        private final int first;
+        private final int count;
+
+        Row(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    private final class RowCell extends ListCell<Row> {
+
+        private final HBox box = new HBox(GAP);
+        private final List<Tile> tiles = new ArrayList<>();
+        private Row shown;
+
+        RowCell() {
+            getStyleClass().add("gallery-row");
+            box.setAlignment(Pos.CENTER_LEFT);
+        }
+
+        @Override
+        protected void updateItem(Row row, boolean empty) {
+            super.updateItem(row, empty);
+            setText(null);
+            if (empty) {
+                row = null;
+            }
+            // called again with the same row on layout
+            if (row == shown) {
+                return;
+            }
+            shown = row;
+            for (Tile tile : tiles) {
+                tile.clear();
+            }
+            if (row == null) {
+                setGraphic(null);
+                return;
+            }
+            while (tiles.size() < row.count) {
+                tiles.add(new Tile());
+            }
+            box.getChildren().clear();
+            for (int i = 0; i < row.count; i++) {
+                Tile tile = tiles.get(i);
+                tile.show(library.getPictures().get(row.first + i));
+                box.getChildren().add(tile.pane);
+            }
+            setGraphic(box);
+        }
+    }
+
+    private final class Tile {
+
+        private final ImageView view = new ImageView();
+        private final StackPane pane = new StackPane(view);
+        private ImageLoader.Request request;
+        private File file;
+
+        Tile() {
+            pane.getStyleClass().add("thumbnail");
+            view.setPreserveRatio(true);
+            pane.setOnMouseClicked(e -> {
+                // not at the end of a scroll
+                if (file != null && e.isStillSincePress()) {
+                    open(file);
+                }
+            });
+        }
+
+        void show(File file) {
+            this.file = file;
+            pane.setMinSize(tileSize, tileSize);
+            pane.setPrefSize(tileSize, tileSize);
+            pane.setMaxSize(tileSize, tileSize);
+            view.setFitWidth(tileSize - GAP);
+            view.setFitHeight(tileSize - GAP);
+            request = loader.load(file, view::setImage);
+        }
+
+        void clear() {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+            file = null;
+            view.setImage(null);
+        }
+    }
+}
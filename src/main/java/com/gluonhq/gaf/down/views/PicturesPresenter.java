@@ -10,7 +10,19 @@ import com.gluonhq.charm.glisten.control.BottomNavigationButton;
 import com.gluonhq.charm.glisten.mvc.View;
 import com.gluonhq.charm.glisten.visual.MaterialDesignIcon;
 import com.gluonhq.gaf.down.GluonGAfDown;
+import com.gluonhq.gaf.down.image.ContrastStage;
+import com.gluonhq.gaf.down.image.ImageCache;
+import com.gluonhq.gaf.down.image.ImageLoader;
+import com.gluonhq.gaf.down.image.PictureLibrary;
+import com.gluonhq.gaf.down.image.SharpenStage;
+import com.gluonhq.gaf.down.image.TileViewer;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
 import javafx.fxml.FXML;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
 public class PicturesPresenter extends GluonPresenter<GluonGAfDown> {
@@ -21,9 +33,27 @@ public class PicturesPresenter extends GluonPresenter<GluonGAfDown> {
     @FXML
     private ImageView imageView;
     
+    @FXML
+    private TileViewer tileViewer;
+
+    @FXML
+    private ProgressIndicator progress;
+    
     @FXML
     private BottomNavigation bottomNavigation;
     
+    /**
+     * Pictures are shown upright. The ones taken with the camera get a light
+     * contrast and sharpening as well, that camera pictures scaled down to
+     * the screen usually need, and are cached with it.
+     */
+    private final ImageLoader loader = new ImageLoader(1, ImageCache.PICTURES);
+    private final ImageLoader capturedLoader = new ImageLoader(1, ImageCache.PICTURES,
+            new ContrastStage(1.1), new SharpenStage(0.25));
+    private final Set<File> captured = new HashSet<>();
+    private ImageLoader.Request request;
+    private File current;
+    
     public void initialize() {
         pictures.setShowTransitionFactory(BounceInRightTransition::new);
         
@@ -33,29 +63,97 @@ public class PicturesPresenter extends GluonPresenter<GluonGAfDown> {
                 appBar.setNavIcon(MaterialDesignIcon.MENU.button(e -> 
                         getApp().getDrawer().open()));
                 appBar.setTitleText(AppViewManager.PICTURES_VIEW.getTitle());
+                appBar.getActionItems().add(MaterialDesignIcon.ZOOM_IN.button(e -> toggleZoom()));
             }
         });
+        tileViewer.loadingProperty().addListener((obs, ov, nv) -> progress.setVisible(nv));
         pictures.setOnShown( e-> {
             imageView.fitWidthProperty().bind(pictures.widthProperty().subtract(10));
                 imageView.fitHeightProperty().bind(pictures.getScene().heightProperty()
                         .subtract(getApp().getAppBar().getHeight() + bottomNavigation.prefHeight(-1) + 10));
+            // picked in the gallery, maybe before this view was ever created
+            File selected = PictureLibrary.DEVICE.getSelected();
+            if (selected != null && ! selected.equals(current)) {
+                show(selected);
+            }
         });
         
         pictures.setOnHidden(e -> {
             imageView.fitWidthProperty().unbind();
             imageView.fitHeightProperty().unbind();
+            closeZoom();
         });
         
         final BottomNavigationButton takePicButton = new BottomNavigationButton("Take Picture", MaterialDesignIcon.PHOTO_CAMERA.graphic(), null);
         
         
-        takePicButton.setOnMousePressed(e -> Services.get(PicturesService.class).ifPresent(p -> p.takePhoto(true).ifPresent(imageView::setImage)));
-        Services.get(PicturesService.class).ifPresent(service -> takePicButton.setOnMousePressed(e ->  service.takePhoto(true).ifPresent(imageView::setImage)));
+        takePicButton.setOnMousePressed(e -> Services.get(PicturesService.class).ifPresent(p -> show(p.takePhoto(true), p, true)));
         
         final BottomNavigationButton retrievePicButton = new BottomNavigationButton("Retrieve Picture", MaterialDesignIcon.PHOTO_ALBUM.graphic(), null);
-        retrievePicButton.setOnMousePressed(e -> Services.get(PicturesService.class).ifPresent(p -> p.loadImageFromGallery().ifPresent(imageView::setImage)));
+        retrievePicButton.setOnMousePressed(e -> Services.get(PicturesService.class).ifPresent(p -> show(p.loadImageFromGallery(), p, false)));
 
         bottomNavigation.getActionItems().addAll(takePicButton, retrievePicButton);
+    }
+    
+    /**
+     * The service returns the picture decoded at full size: it is dropped, 
+     * and its file is decoded again in the background, at the size of the 
+     * view, while a placeholder is shown, unless the cache has it already.
+     * The full size picture is only shown if there is no file.
+     */
+    private void show(Optional<Image> picture, PicturesService service, boolean capture) {
+        if (! picture.isPresent()) {
+            return;
+        }
+        Optional<File> file = service.getImageFile();
+        if (! file.isPresent()) {
+            imageView.setImage(picture.get());
+            return;
+        }
+        if (capture) {
+            captured.add(file.get());
+        }
+        PictureLibrary.DEVICE.add(file.get());
+        PictureLibrary.DEVICE.setSelected(file.get());
+        show(file.get());
+    }
+
+    private void show(File file) {
+        current = file;
+        closeZoom();
+        if (request != null) {
+            request.cancel();
+        }
+        // the view is showing, so the fit size is bound
+        double width = imageView.getFitWidth();
+        double height = imageView.getFitHeight();
+        imageView.setImage(null);
+        progress.setVisible(true);
+        request = (captured.contains(file) ? capturedLoader : loader).load(file, width, height, image -> {
+            progress.setVisible(false);
+            imageView.setImage(image);
+        });
+    }
+
+    /**
+     * Shows the current picture in the tile viewer, that reads only the
+     * tiles on screen at the resolution of the zoom, or goes back to the
+     * picture scaled to the view
+     */
+    private void toggleZoom() {
+        if (tileViewer.isVisible()) {
+            closeZoom();
+        } else if (current != null) {
+            tileViewer.setVisible(true);
+            tileViewer.show(current);
+        }
+    }
 
+    private void closeZoom() {
+        if (tileViewer.isVisible()) {
+            tileViewer.setVisible(false);
+            // releases the tiles
+            tileViewer.show(null);
+        }
     }
 }
@@ -0,0 +1,118 @@
+package com.gluonhq.gaf.down.views;
+
+import com.gluonhq.charm.down.plugins.Acceleration;
+import com.gluonhq.charm.glisten.afterburner.GluonPresenter;
+import com.gluonhq.charm.glisten.control.AppBar;
+import com.gluonhq.charm.glisten.mvc.View;
+import com.gluonhq.charm.glisten.visual.MaterialDesignIcon;
+import com.gluonhq.format.CharFormatter;
+import com.gluonhq.format.ZoneOffsetCache;
+import com.gluonhq.gaf.down.GluonGAfDown;
+import com.gluonhq.gaf.down.chart.SpectrumChart;
+import com.gluonhq.gaf.down.dsp.SpectrumAnalyzer;
+import com.gluonhq.gaf.down.service.SensorStream;
+import javafx.animation.AnimationTimer;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
+
+public class SpectrumPresenter extends GluonPresenter<GluonGAfDown> {
+
+    private static final int[] WINDOW_SIZES = {256, 1024, 4096};
+
+    @FXML
+    private View spectrum;
+
+    @FXML
+    private Label info;
+
+    @FXML
+    private SpectrumChart chart;
+
+    private SpectrumAnalyzer analyzer;
+    private double[] magnitudes;
+    private long version;
+    private SensorStream.Subscription subscription;
+    private final CharFormatter infoText = new CharFormatter();
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (analyzer.getVersion() != version) {
+                version = analyzer.getVersion();
+                double rate = analyzer.read(magnitudes);
+                chart.update(magnitudes, analyzer.getBins(), rate);
+                updateInfo(rate);
+            }
+        }
+    };
+
+    public void initialize() {
+        spectrum.showingProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue) {
+                AppBar appBar = getApp().getAppBar();
+                appBar.setNavIcon(MaterialDesignIcon.MENU.button(e ->
+                        getApp().getDrawer().open()));
+                appBar.setTitleText(AppViewManager.SPECTRUM_VIEW.getTitle());
+                for (int size : WINDOW_SIZES) {
+                    MenuItem item = new MenuItem("Window: " + size + " samples");
+                    item.setOnAction(e -> setWindowSize(size));
+                    appBar.getMenuItems().add(item);
+                }
+
+                analyzer.start();
+                subscription = SensorStream.ACCELERATION.subscribe(this::addSample);
+                timer.start();
+            } else {
+                timer.stop();
+                analyzer.stop();
+                if (subscription != null) {
+                    subscription.release();
+                    subscription = null;
+                }
+            }
+        });
+
+        setWindowSize(1024);
+    }
+
+    /**
+     * Replaces the analyzer with one of the given window size, with a hop of
+     * a quarter of the window
+     */
+    private void setWindowSize(int size) {
+        if (analyzer != null) {
+            analyzer.stop();
+        }
+        analyzer = new SpectrumAnalyzer(size, size / 4);
+        magnitudes = new double[analyzer.getBins()];
+        version = 0;
+        chart.clear();
+        updateInfo(0);
+        if (spectrum.isShowing()) {
+            analyzer.start();
+        }
+    }
+
+    /**
+     * The spectrum of the magnitude of the acceleration, that doesn't depend
+     * on the orientation of the device
+     */
+    private void addSample(Acceleration acceleration) {
+        double x = acceleration.getX();
+        double y = acceleration.getY();
+        double z = acceleration.getZ();
+        analyzer.offer(ZoneOffsetCache.toEpochMillis(acceleration.getTimestamp()),
+                Math.sqrt(x * x + y * y + z * z));
+    }
+
+    private void updateInfo(double rate) {
+        infoText.clear()
+                .append("Window: ").append(analyzer.getSize())
+                .append(", hop: ").append(analyzer.getHop())
+                .append(", rate: ").append(rate, 1).append(" Hz")
+                .append(", FFT: ").append(analyzer.getAverageTransformTime() / 1000.0, 1).append(" \u00b5s");
+        info.setText(infoText.toString());
+    }
+
+}